@@ -0,0 +1,16 @@
+package jibe.tools.fsm.annotations;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Orthogonal region of a {@link StateMachine}: a class, declared by the state machine, holding its own start-state
+ * and states. Every event is dispatched to all regions, concurrently, and they all complete before the next event.
+ */
+@Target({ ElementType.TYPE })
+@Retention(RetentionPolicy.RUNTIME)
+public @interface Region {
+    String name() default "";
+}
@@ -0,0 +1,16 @@
+package jibe.tools.fsm.annotations;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Groups the states declared inside it. Its transitions apply to every nested state that has none of its own for the
+ * event, and its actions run when a transition crosses its boundary. Superstates nest, but are never current
+ * themselves: transitions always target a {@link State} or {@link StartState}. Timeouts are declared on states only.
+ */
+@Target({ ElementType.TYPE })
+@Retention(RetentionPolicy.RUNTIME)
+public @interface SuperState {
+}
@@ -11,4 +11,11 @@ import java.lang.annotation.Target;
 @Target({ ElementType.METHOD })
 @Retention(RetentionPolicy.RUNTIME)
 public @interface Transition {
+    /**
+     * Event values this transition fires on: names of enum constants, strings, or anything the event type parses with
+     * a static {@code valueOf(String)}. The engine then finds the transition by looking the event up in a per-state
+     * index instead of calling every transition taking the event type as a guard. Transitions keyed on the event take
+     * precedence over those taking any value of its type.
+     */
+    String[] on() default {};
 }
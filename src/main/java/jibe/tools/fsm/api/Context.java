@@ -1,7 +1,20 @@
 package jibe.tools.fsm.api;
 
 /**
- *
+ * Engine services for the fsm. A field of this type declared by the fsm, or by one of its regions, is set by the
+ * engine when it is created.
  */
 public interface Context {
+    /**
+     * An instance of {@code state} for a transition to fill in and return: a recycled one when the engine pools
+     * {@link StateInstances states}, and one no longer in use is available, otherwise a new one.
+     */
+    <S> S recycle(Class<S> state);
+
+    /**
+     * Raises an internal event from an action or transition. Internal events are dispatched, in the order raised,
+     * right after the current one and before any event queued from outside; in an fsm with regions they stay in the
+     * region raising them.
+     */
+    void raise(Object event);
 }
@@ -0,0 +1,15 @@
+package jibe.tools.fsm.api;
+
+/**
+ *
+ */
+public enum Discovery {
+    /**
+     * Scan the fsm package, or {@code @StateMachine.pkgs}, for states and timers.
+     */
+    Scan,
+    /**
+     * Use only the classes declared inside the fsm class and those registered explicitly. Nothing is scanned.
+     */
+    Declared
+}
@@ -3,9 +3,13 @@ package jibe.tools.fsm.api;
 import com.google.common.base.Optional;
 import com.google.common.util.concurrent.Service;
 
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ThreadFactory;
+import java.util.function.Consumer;
 
 /**
  *
@@ -23,11 +27,21 @@ public interface Engine<F, E> extends Service {
 
     Snapshot getSnapshot();
 
+    /**
+     * Settings of an engine; null leaves a setting at its default, so implementations only override what they set.
+     */
     interface Configuration {
         ThreadFactory getThreadFactory();
 
+        /**
+         * Pool the engine runs on, which may be shared by many engines; null for one the engine creates, and shuts
+         * down when it stops.
+         */
         ExecutorService getExecutorService();
 
+        /**
+         * Scheduler of the engine's timers, shared as {@link #getExecutorService()} is.
+         */
         ScheduledExecutorService getScheduledExecutorService();
 
         Integer getQueueSize();
@@ -37,6 +51,126 @@ public interface Engine<F, E> extends Service {
         Long getTransitionTimeoutMillis();
 
         ClassLoader getClassLoader();
+
+        default Journal getJournal() {
+            return null;
+        }
+
+        default Clock getClock() {
+            return null;
+        }
+
+        /**
+         * When true the engine has no thread of its own: events and timers are dispatched on the thread delivering them.
+         */
+        default Boolean getInline() {
+            return null;
+        }
+
+        default Discovery getDiscovery() {
+            return null;
+        }
+
+        /**
+         * States, and timer events, registered explicitly in addition to those discovered.
+         */
+        default Set<Class<?>> getStates() {
+            return null;
+        }
+
+        /**
+         * Number of transitions kept, per engine, in an in-memory flight recorder; 0 turns it off.
+         */
+        default Integer getTransitionHistory() {
+            return null;
+        }
+
+        /**
+         * Pool running the {@link jibe.tools.fsm.annotations.Region regions} of an fsm concurrently.
+         */
+        default ForkJoinPool getRegionPool() {
+            return null;
+        }
+
+        default StateInstances getStateInstances() {
+            return null;
+        }
+
+        /**
+         * Idle period after which an engine without a thread of its own hibernates; 0 for a threaded engine that
+         * never does.
+         */
+        default Long getHibernateAfterMillis() {
+            return null;
+        }
+
+        /**
+         * Size of the ring publishing transitions to subscribers on their own threads; 0 turns it off.
+         */
+        default Integer getTransitionStreamSize() {
+            return null;
+        }
+
+        default StreamOverflow getTransitionStreamOverflow() {
+            return null;
+        }
+
+        default EventFilter getEventFilter() {
+            return null;
+        }
+
+        /**
+         * Default time, in millis by event type, an event may wait in the queue before it is discarded.
+         */
+        default Map<Class<?>, Long> getEventDeadlines() {
+            return null;
+        }
+
+        /**
+         * Receives the events discarded because their deadline passed; null if none.
+         */
+        default Consumer<Object> getDeadLetters() {
+            return null;
+        }
+
+        /**
+         * Upper bound for the queue limit when it is raised at runtime; 0 for the queue size.
+         */
+        default Integer getMaxQueueSize() {
+            return null;
+        }
+
+        /**
+         * Group the engine is registered in as an MBean; null if it is not.
+         */
+        default String getMBeanGroup() {
+            return null;
+        }
+
+        /**
+         * Receives every event sent to the engine once it has been dispatched; null if none.
+         */
+        default Consumer<Object> getDispatchListener() {
+            return null;
+        }
+
+        default Supervision getSupervision() {
+            return null;
+        }
+
+        /**
+         * State entered under {@link Supervision#ErrorState}.
+         */
+        default Class<?> getErrorState() {
+            return null;
+        }
+
+        /**
+         * Pause after a first {@link Supervision#Restart}, doubled for every consecutive one.
+         */
+        default Long getRestartBackoffMillis() {
+            return null;
+        }
     }
 
     interface Snapshot {
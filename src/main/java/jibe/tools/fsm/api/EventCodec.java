@@ -0,0 +1,10 @@
+package jibe.tools.fsm.api;
+
+/**
+ *
+ */
+public interface EventCodec<E> {
+    byte[] encode(E event);
+
+    E decode(byte[] bytes);
+}
@@ -0,0 +1,22 @@
+package jibe.tools.fsm.api;
+
+/**
+ * Whether {@link Engine#event(Object)} drops, on the calling thread and without queueing it, an event the current
+ * state can not take: one triggering no transition and running no implied action. Timeouts are never filtered.
+ */
+public enum EventFilter {
+    /**
+     * Every event is queued.
+     */
+    None,
+    /**
+     * Events are filtered only while the engine is idle, with nothing queued or being dispatched, so that no event
+     * ahead of it can change the state it is checked against.
+     */
+    Idle,
+    /**
+     * Events are filtered against the state current when they are sent, even if events queued ahead of them would
+     * have changed it: an event racing the transition that makes it acceptable may be dropped.
+     */
+    Eager
+}
@@ -0,0 +1,51 @@
+package jibe.tools.fsm.api;
+
+/**
+ * Write-ahead log of the events accepted by an {@link Engine}. Events are appended before they are dispatched and the
+ * engine reports back what it has processed so the journal can compact itself against the latest snapshot.
+ */
+public interface Journal<E> {
+
+    /**
+     * Reads the latest snapshot and the tail of the log after it. Must be called once, before the first append.
+     */
+    void recover(Replayer<E> replayer);
+
+    long append(E event);
+
+    long appendTimeout(String timeout);
+
+    /**
+     * Records that the event journaled at {@code sequence} failed and was dropped by the engine's supervision, so that
+     * recovery does not replay it. Takes no sequence of its own.
+     */
+    void appendFailed(long sequence);
+
+    /**
+     * Records that the event journaled at {@code sequence} passed its deadline in the queue and was discarded rather
+     * than dispatched, so that recovery does not replay it. Takes no sequence of its own.
+     */
+    void appendExpired(long sequence);
+
+    void processed(long sequence, String currentState);
+
+    void close();
+
+    interface Replayer<E> {
+        void snapshot(long sequence, String currentState);
+
+        void event(long sequence, E event);
+
+        void timeout(long sequence, String timeout);
+
+        /**
+         * The event, or timeout, at {@code sequence}, already handed over, failed.
+         */
+        void failed(long sequence);
+
+        /**
+         * The event at {@code sequence}, already handed over, expired.
+         */
+        void expired(long sequence);
+    }
+}
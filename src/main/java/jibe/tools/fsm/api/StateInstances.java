@@ -0,0 +1,19 @@
+package jibe.tools.fsm.api;
+
+/**
+ * What the engine does with the state instance a transition returns.
+ */
+public enum StateInstances {
+    /**
+     * Only its class is used: actions run on one instance per state, created by the engine and kept for its lifetime.
+     */
+    Cached,
+    /**
+     * It becomes the live state: actions run on it, and it can carry data for the visit.
+     */
+    Adopted,
+    /**
+     * As {@link #Adopted}, and the instance of a state being left is pooled for {@link Context#recycle(Class)}.
+     */
+    Pooled
+}
@@ -0,0 +1,49 @@
+package jibe.tools.fsm.api;
+
+import java.util.function.LongConsumer;
+
+/**
+ * Runtime data of many instances of one fsm, addressed by entity key: the current and previous state ordinal and the
+ * deadline of the next timeout. Not thread-safe; a store has a single writer.
+ */
+public interface StateStore {
+    int NONE = -1;
+
+    /**
+     * @return the current state of {@code key}, or {@link #NONE}
+     */
+    int state(long key);
+
+    int previous(long key);
+
+    /**
+     * @return the deadline, in millis, of the pending timeout of {@code key}, or 0 if there is none
+     */
+    long deadline(long key);
+
+    /**
+     * @return which timeout of the current state the deadline is for
+     */
+    int timeout(long key);
+
+    void put(long key, int state, int previous, long deadline, int timeout);
+
+    boolean remove(long key);
+
+    int size();
+
+    /**
+     * Calls {@code consumer} with the keys whose deadline is at or before {@code nowMillis}; the consumer must not
+     * change the store. A key reported is expected to get a new deadline, or none, before the next call.
+     */
+    void expired(long nowMillis, LongConsumer consumer);
+
+    /**
+     * Identifies the fsm definition the ordinals belong to; 0 until set.
+     */
+    long getFingerprint();
+
+    void setFingerprint(long fingerprint);
+
+    void close();
+}
@@ -0,0 +1,15 @@
+package jibe.tools.fsm.api;
+
+/**
+ * What a transition stream does when its slowest subscriber is a full ring behind. The engine never waits for it.
+ */
+public enum StreamOverflow {
+    /**
+     * The oldest records are overwritten; a subscriber finding it was lapped skips ahead and counts them as lost.
+     */
+    Overwrite,
+    /**
+     * New records are dropped, and counted, until the slowest subscriber catches up.
+     */
+    Drop
+}
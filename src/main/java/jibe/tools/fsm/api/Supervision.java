@@ -0,0 +1,25 @@
+package jibe.tools.fsm.api;
+
+/**
+ * What an engine does when a transition or action throws.
+ */
+public enum Supervision {
+    /**
+     * The engine stops, failing with the exception.
+     */
+    Stop,
+    /**
+     * The event is dropped and the engine carries on as if it had not been sent.
+     */
+    Resume,
+    /**
+     * The event is dropped and the current state restarted in place: its instances, and those of its superstates, are
+     * recreated and entered again, and dispatching resumes after a backoff doubling with every consecutive failure.
+     * The model, the current state and the queued events are kept.
+     */
+    Restart,
+    /**
+     * The event is dropped and the engine moves to the configured error state, without exiting the failed one.
+     */
+    ErrorState
+}
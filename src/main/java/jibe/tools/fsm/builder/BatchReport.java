@@ -0,0 +1,105 @@
+package jibe.tools.fsm.builder;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.BiConsumer;
+
+/**
+ * Outcome of a {@link BatchRunner} run: the final state of every key and what it took to get there. The states stay
+ * in the partitions they were computed in, so looking one up or visiting all of them copies nothing.
+ */
+public final class BatchReport<K> {
+    private final TransitionTable table;
+    private final List<BatchRunner.Partition<K>> partitions;
+    private final long[] stateCounts;
+    private final Map<String, Long> transitionCounts = new TreeMap<>();
+    private long keys;
+    private long events;
+    private long transitions;
+    private long unhandled;
+
+    BatchReport(TransitionTable table, List<BatchRunner.Partition<K>> partitions) {
+        this.table = table;
+        this.partitions = partitions;
+        this.stateCounts = new long[table.size()];
+        for (BatchRunner.Partition<K> partition : partitions) {
+            keys += partition.states.size();
+            events += partition.events;
+            transitions += partition.transitions;
+            unhandled += partition.unhandled;
+            for (Integer state : partition.states.values()) {
+                stateCounts[state]++;
+            }
+            for (Map.Entry<String, Long> e : partition.transitionCounts.entrySet()) {
+                transitionCounts.merge(e.getKey(), e.getValue(), Long::sum);
+            }
+        }
+    }
+
+    /**
+     * @return the final state of {@code key}, or null if it had no events
+     */
+    public String getState(K key) {
+        Integer state = partitions.get(BatchRunner.partition(key, partitions.size())).states.get(key);
+        return state != null ? table.stateName(state) : null;
+    }
+
+    /**
+     * Visits every key with its final state, partition by partition.
+     */
+    public void forEach(BiConsumer<? super K, String> consumer) {
+        for (BatchRunner.Partition<K> partition : partitions) {
+            for (Map.Entry<K, Integer> e : partition.states.entrySet()) {
+                consumer.accept(e.getKey(), table.stateName(e.getValue()));
+            }
+        }
+    }
+
+    public long getKeys() {
+        return keys;
+    }
+
+    public long getEvents() {
+        return events;
+    }
+
+    public long getTransitions() {
+        return transitions;
+    }
+
+    /**
+     * @return the number of events no transition of the key's state accepted
+     */
+    public long getUnhandled() {
+        return unhandled;
+    }
+
+    /**
+     * @return the number of keys ending in each state, states no key ended in left out
+     */
+    public Map<String, Long> getStateCounts() {
+        Map<String, Long> answer = new LinkedHashMap<>();
+        for (int i = 0; i < stateCounts.length; i++) {
+            if (stateCounts[i] > 0) {
+                answer.put(table.stateName(i), stateCounts[i]);
+            }
+        }
+        return answer;
+    }
+
+    /**
+     * @return the number of times each transition, by name, fired
+     */
+    public Map<String, Long> getTransitionCounts() {
+        return Collections.unmodifiableMap(transitionCounts);
+    }
+
+    @Override
+    public String toString() {
+        return "BatchReport{keys=" + keys + ", events=" + events + ", transitions=" + transitions + ", unhandled=" + unhandled
+                + ", states=" + getStateCounts() + '}';
+    }
+}
@@ -0,0 +1,133 @@
+package jibe.tools.fsm.builder;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Spliterator;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Runs a {@link TransitionTable} over a finite sequence of keyed events, such as a day of records to reprocess, and
+ * reports where every key ended up. There is no engine, thread, queue or timer per key: the events are split by key
+ * into partitions in one pass, keeping the order of every key, and each partition is then dispatched sequentially on
+ * a fork-join worker, holding nothing per key but its state. Timeouts are ignored, there being no clock to fire them.
+ * <p/>
+ * Actions of the definition run concurrently on the workers, for different keys, and must be thread-safe.
+ */
+public class BatchRunner<K, E> {
+    private static final Logger LOGGER = LoggerFactory.getLogger(BatchRunner.class);
+
+    private final TransitionTable table;
+    private final ForkJoinPool pool;
+    private final int partitions;
+
+    BatchRunner(TransitionTable table, ForkJoinPool pool) {
+        this.table = requireNonNull(table);
+        this.pool = requireNonNull(pool);
+        // a few partitions per worker evens out skewed keys; a power of two to mask rather than divide
+        this.partitions = Integer.highestOneBit(Math.max(1, pool.getParallelism() * 4 - 1)) << 1;
+    }
+
+    public BatchReport<K> run(Stream<? extends Map.Entry<? extends K, ? extends E>> events) {
+        return run(events.spliterator());
+    }
+
+    public BatchReport<K> run(Spliterator<? extends Map.Entry<? extends K, ? extends E>> events) {
+        List<List<Object>> split = new ArrayList<>(partitions);
+        for (int i = 0; i < partitions; i++) {
+            split.add(new ArrayList<>());
+        }
+        // keys and events interleaved, saving an entry per record
+        events.forEachRemaining(e -> {
+            List<Object> partition = split.get(partition(e.getKey(), partitions));
+            partition.add(e.getKey());
+            partition.add(e.getValue());
+        });
+
+        List<ForkJoinTask<Partition<K>>> tasks = new ArrayList<>(partitions);
+        for (List<Object> records : split) {
+            tasks.add(pool.submit(() -> dispatch(records)));
+        }
+        List<Partition<K>> answer = new ArrayList<>(partitions);
+        for (ForkJoinTask<Partition<K>> task : tasks) {
+            answer.add(task.join());
+        }
+        BatchReport<K> report = new BatchReport<>(table, answer);
+        LOGGER.debug("ran: " + report);
+        return report;
+    }
+
+    /**
+     * @param partitions a power of two
+     */
+    static int partition(Object key, int partitions) {
+        int h = key.hashCode();
+        return (h ^ (h >>> 16)) & (partitions - 1);
+    }
+
+    @SuppressWarnings("unchecked")
+    private Partition<K> dispatch(List<Object> records) {
+        Partition<K> partition = new Partition<>();
+        for (int i = 0; i < records.size(); i += 2) {
+            K key = (K) records.get(i);
+            Object event = records.get(i + 1);
+            partition.events++;
+            Integer current = partition.states.get(key);
+            int state;
+            if (current == null) {
+                state = table.start();
+                // as on starting a table engine, no event enters the start state
+                run(table.state(state).onEnter, null);
+            } else {
+                state = current;
+            }
+
+            TransitionTable.Row row = table.find(state, event);
+            if (row == null) {
+                partition.unhandled++;
+            } else {
+                run(table.state(state).onExit, event);
+                if (row.action != null) {
+                    row.action.accept(event);
+                }
+                run(table.state(row.to).onEnter, event);
+                partition.transitions++;
+                partition.transitionCounts.merge(row.name, 1L, Long::sum);
+                state = row.to;
+            }
+            if ((current == null) || (current != state)) {
+                partition.states.put(key, state);
+            }
+            // the interleaved records are not needed again
+            records.set(i, null);
+            records.set(i + 1, null);
+        }
+        return partition;
+    }
+
+    private void run(Consumer<Object>[] actions, Object event) {
+        for (Consumer<Object> action : actions) {
+            action.accept(event);
+        }
+    }
+
+    /**
+     * What one worker found: the state of its keys, by state index, and its counts.
+     */
+    static final class Partition<K> {
+        final Map<K, Integer> states = new HashMap<>();
+        final Map<String, Long> transitionCounts = new HashMap<>();
+        long events;
+        long transitions;
+        long unhandled;
+    }
+}
@@ -1,151 +1,160 @@
 package jibe.tools.fsm.builder;
 
-import com.google.common.base.Throwables;
 import com.google.common.collect.Sets;
-import javassist.ClassPool;
-import javassist.CtClass;
-import javassist.bytecode.AnnotationsAttribute;
-import javassist.bytecode.ClassFile;
-import javassist.bytecode.ConstPool;
+import jibe.tools.fsm.annotations.StartState;
 import jibe.tools.fsm.annotations.State;
-import jibe.tools.fsm.annotations.StateMachine;
+import jibe.tools.fsm.api.Clock;
 import jibe.tools.fsm.api.Engine;
-import jibe.tools.fsm.core.EngineFactory;
-import org.apache.commons.lang3.RandomStringUtils;
+import jibe.tools.fsm.api.StateStore;
+import jibe.tools.fsm.core.DefaultEngine;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.File;
-import java.lang.annotation.Annotation;
-import java.net.URL;
-import java.net.URLClassLoader;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
 
 import static com.google.common.collect.Lists.newArrayList;
 import static com.google.common.collect.Maps.newHashMap;
 import static jibe.tools.fsm.core.DefaultEngine.configurationBuilder;
 
 /**
- *
+ * Builds an fsm from code rather than annotated classes. The definition is compiled into an in-memory
+ * {@link TransitionTable} and run by a {@link TableEngine}: no classes are generated or loaded.
  */
 public class FSMBuilder<T extends StateBuilder> {
     private static final Logger LOGGER = LoggerFactory.getLogger(FSMBuilder.class);
 
-    final String packageName;
-    private final CtClass stateMachine;
-
-    private final Map<String, CtClass> stateMap = newHashMap();
-    private final Set<T> stateBuilders = Sets.newHashSet();
+    private final Set<T> stateBuilders = Sets.newLinkedHashSet();
 
     public FSMBuilder() {
-        packageName = "jibe.tools.fsm.builder." + RandomStringUtils.randomAlphabetic(5);
-        ClassPool classPool = ClassPool.getDefault();
-        try {
-            classPool.makePackage(classPool.getClassLoader(), packageName);
-            this.stateMachine = makeClassWithAnnotation(packageName + ".StateMachine", StateMachine.class);
-        } catch (Exception e) {
-            throw Throwables.propagate(e);
-        }
     }
 
     public static TransitionBuilder transition(String name) {
         return new TransitionBuilder(name);
     }
 
-    private Class<?> writeFile(CtClass ctClass) {
-        try {
-            ctClass.writeFile(System.getProperty("java.io.tmpdir"));
-            return ctClass.toClass();
-        } catch (Exception e) {
-            throw Throwables.propagate(e);
-        }
+    public static TransitionOnTimeoutBuilder timeout(String name) {
+        return new TransitionOnTimeoutBuilder(name);
     }
 
     public Engine build() {
-        try {
-            // All states
-            Set<StateBuilder.StateFacade> stateFacades = Sets.newHashSet();
-            for (StateBuilder sb : stateBuilders) {
-                StateBuilder.StateFacade stateFacade = sb.build();
-                stateFacades.add(stateFacade);
-                String className = packageName + "." + stateFacade.getName();
-                stateMap.put(className, makeClassWithAnnotation(className, stateFacade.getAnnotationClass()));
+        return build(configurationBuilder());
+    }
+
+    public <E> Engine<TransitionTable, E> build(DefaultEngine.ConfigurationBuilder configurationBuilder) {
+        return new TableEngine<>(compile(), configurationBuilder.build());
+    }
+
+    /**
+     * @return an engine running this definition for every entity kept in {@code store}
+     */
+    public <E> StoreEngine<E> build(StateStore store, Clock clock) {
+        return new StoreEngine<>(compile(), store, clock);
+    }
+
+    /**
+     * @return a runner reprocessing keyed events with this definition on the common fork-join pool
+     */
+    public <K, E> BatchRunner<K, E> batch() {
+        return batch(ForkJoinPool.commonPool());
+    }
+
+    public <K, E> BatchRunner<K, E> batch(ForkJoinPool pool) {
+        return new BatchRunner<>(compile(), pool);
+    }
+
+    public TransitionTable compile() {
+        List<StateBuilder.StateFacade> stateFacades = newArrayList();
+        Map<String, Integer> indexes = newHashMap();
+        List<String> names = newArrayList();
+        int start = -1;
+        for (StateBuilder sb : stateBuilders) {
+            StateBuilder.StateFacade stateFacade = sb.build();
+            if (indexes.containsKey(stateFacade.getName())) {
+                throw new IllegalStateException("state: " + stateFacade.getName() + " defined more than once");
             }
-            // Transition States
-            Set<TransitionBuilder.TransitionFacade> transitionFacades = Sets.newHashSet();
-            for (StateBuilder.StateFacade sf : stateFacades) {
-                for (TransitionBuilder.TransitionFacade tf : sf.getTransitions()) {
-                    transitionFacades.add(tf);
-                    String toState = tf.getToState();
-                    String className = packageName + "." + toState;
-                    stateMap.put(className, makeClassWithAnnotation(className, State.class));
+            if (stateFacade.getAnnotationClass().equals(StartState.class)) {
+                if (start != -1) {
+                    throw new IllegalStateException("more than one start-state: " + names.get(start) + ", " + stateFacade.getName());
                 }
+                start = names.size();
             }
+            indexes.put(stateFacade.getName(), names.size());
+            names.add(stateFacade.getName());
+            stateFacades.add(stateFacade);
+        }
+        if (start == -1) {
+            throw new IllegalStateException("no start-state found");
+        }
 
-            // Create the real States
-            for (CtClass ctClass : stateMap.values()) {
-                ctClass.writeFile(System.getProperty("java.io.tmpdir"));
+        // Transition targets never defined are plain states without behaviour
+        for (StateBuilder.StateFacade sf : newArrayList(stateFacades)) {
+            for (TransitionBuilder.TransitionFacade tf : sf.getTransitions()) {
+                addImplicitState(tf.getToState(), indexes, names, stateFacades);
+            }
+            for (TransitionOnTimeoutBuilder.TransitionOnTimeoutFacade tf : sf.getTimeouts()) {
+                addImplicitState(tf.getToState(), indexes, names, stateFacades);
             }
+        }
 
-            return EngineFactory.newInstance()
-                    .newEngine(writeFile(stateMachine).newInstance(), configurationBuilder()
-                            .classLoader(newClassLoader()));
-        } catch (Exception e) {
-            throw Throwables.propagate(e);
+        TransitionTable.StateRow[] states = new TransitionTable.StateRow[names.size()];
+        for (int i = 0; i < states.length; i++) {
+            states[i] = compile(stateFacades.get(i), indexes);
         }
+        LOGGER.debug("compiled: " + names);
+        return new TransitionTable(names.toArray(new String[0]), indexes, states, start);
     }
 
-    CtClass makeClassWithAnnotation(String className, Class<? extends Annotation> annotationClass) {
-        if (!className.startsWith(packageName)) {
-            className = packageName + "." + className;
-        }
-        ClassPool cp = ClassPool.getDefault();
-        try {
-            return cp.get(className);
-        } catch (javassist.NotFoundException e) {
+    private void addImplicitState(String name, Map<String, Integer> indexes, List<String> names, List<StateBuilder.StateFacade> stateFacades) {
+        if (!indexes.containsKey(name)) {
+            indexes.put(name, names.size());
+            names.add(name);
+            stateFacades.add(new StateBuilder.StateFacade(name, State.class, newArrayList(), newArrayList()));
         }
-        CtClass ctClass = cp.makeClass(className);
-        ClassFile classFile = ctClass.getClassFile();
-        ConstPool constPool = classFile.getConstPool();
-        AnnotationsAttribute attr = new AnnotationsAttribute(constPool, AnnotationsAttribute.visibleTag);
-        javassist.bytecode.annotation.Annotation annotation = new javassist.bytecode.annotation.Annotation(annotationClass.getName(), constPool);
-        attr.setAnnotation(annotation);
-        classFile.addAttribute(attr);
-        return ctClass;
     }
 
-    void makeTransitionMethod(CtClass declaringClass, CtClass toState, Object event) {
-        String methodTemplate
-                = "@jibe.tools.fsm.annotations.Transition"
-                + "public %s %s(%s event) {"
-                + "  %s;"
-                + "}";
-
-        //        String methodSrc = String.format(methodTemplate, toState.getName(), methodName, argType, methodBody);
-        //        return CtMethod.make(methodSrc, declaringClass);
-    }
+    private TransitionTable.StateRow compile(StateBuilder.StateFacade sf, Map<String, Integer> indexes) {
+        Map<Object, List<TransitionTable.Row>> byValue = newHashMap();
+        List<TransitionTable.Row> byType = newArrayList();
+        for (TransitionBuilder.TransitionFacade tf : sf.getTransitions()) {
+            Object event = tf.getEvent();
+            Class<?> type = event instanceof Class ? (Class<?>) event : (event == null ? Object.class : event.getClass());
+            TransitionTable.Row row = new TransitionTable.Row(tf.getName(), type, tf.getGuard(), tf.getAction(), indexes.get(tf.getToState()));
+            if ((event == null) || (event instanceof Class)) {
+                byType.add(row);
+            } else {
+                List<TransitionTable.Row> rows = byValue.get(event);
+                if (rows == null) {
+                    rows = newArrayList();
+                    byValue.put(event, rows);
+                }
+                rows.add(row);
+            }
+        }
 
-    private ClassLoader newClassLoader() {
-        List<URL> urLs = newArrayList(((URLClassLoader) FSMBuilder.class.getClassLoader()).getURLs());
-        try {
-            urLs.add(new File(System.getProperty("java.io.tmpdir")).toURI().toURL());
+        Map<Object, TransitionTable.Row[]> compiledByValue = newHashMap();
+        for (Map.Entry<Object, List<TransitionTable.Row>> e : byValue.entrySet()) {
+            compiledByValue.put(e.getKey(), e.getValue().toArray(new TransitionTable.Row[0]));
+        }
 
-        } catch (Exception e) {
-            throw Throwables.propagate(e);
+        List<TransitionTable.TimeoutRow> timeouts = newArrayList();
+        for (TransitionOnTimeoutBuilder.TransitionOnTimeoutFacade tf : sf.getTimeouts()) {
+            timeouts.add(new TransitionTable.TimeoutRow(tf.getName(), tf.getPeriod(), tf.getTimeUnit(), indexes.get(tf.getToState())));
         }
-        return new MyClassLoader(urLs.toArray(new URL[0]));
+
+        return new TransitionTable.StateRow(
+                sf.getOnEnter().toArray(new Consumer[0]),
+                sf.getOnExit().toArray(new Consumer[0]),
+                compiledByValue,
+                byType.toArray(new TransitionTable.Row[0]),
+                timeouts.toArray(new TransitionTable.TimeoutRow[0]));
     }
 
     public T addStateBuilder(T stateBuilder) {
         stateBuilders.add(stateBuilder);
         return stateBuilder;
     }
-
-    public class MyClassLoader extends URLClassLoader {
-        public MyClassLoader(URL[] urls) {
-            super(urls);
-        }
-    }
 }
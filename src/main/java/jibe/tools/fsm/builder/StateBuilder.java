@@ -1,14 +1,15 @@
 package jibe.tools.fsm.builder;
 
-import com.google.common.base.Optional;
-import com.google.common.base.Strings;
 import jibe.tools.fsm.annotations.State;
 
 import java.lang.annotation.Annotation;
+import java.util.List;
 import java.util.Objects;
 import java.util.Set;
+import java.util.function.Consumer;
 
-import static com.google.common.collect.Sets.newHashSet;
+import static com.google.common.collect.Lists.newArrayList;
+import static com.google.common.collect.Sets.newLinkedHashSet;
 
 /**
  *
@@ -18,9 +19,10 @@ public class StateBuilder {
     final String name;
     private final Class<? extends Annotation> annotationClass;
     private final FSMBuilder fsmBuilder;
-    private final Set<TransitionBuilder> transitionBuilders = newHashSet();
-    private Optional<String> onEnterCode = Optional.absent();
-    private Optional<String> onExitCode = Optional.absent();
+    private final Set<TransitionBuilder> transitionBuilders = newLinkedHashSet();
+    private final Set<TransitionOnTimeoutBuilder> timeoutBuilders = newLinkedHashSet();
+    private final List<Consumer<Object>> onEnter = newArrayList();
+    private final List<Consumer<Object>> onExit = newArrayList();
 
     public StateBuilder(FSMBuilder fsmBuilder, String name) {
         this(fsmBuilder, name, State.class);
@@ -34,46 +36,78 @@ public class StateBuilder {
     }
 
     public StateBuilder transitions(TransitionBuilder... transitionBuilders) {
-        this.transitionBuilders.addAll(newHashSet(transitionBuilders));
+        this.transitionBuilders.addAll(newLinkedHashSet(newArrayList(transitionBuilders)));
+        return this;
+    }
+
+    public StateBuilder timeouts(TransitionOnTimeoutBuilder... timeoutBuilders) {
+        this.timeoutBuilders.addAll(newLinkedHashSet(newArrayList(timeoutBuilders)));
         return this;
     }
 
     StateFacade build() {
-        StateFacade stateFacade = new StateFacade(name, annotationClass, onEnterCode, onExitCode);
+        StateFacade stateFacade = new StateFacade(name, annotationClass, onEnter, onExit);
         for (TransitionBuilder tb : transitionBuilders) {
             stateFacade.addTransition(tb.build());
         }
+        for (TransitionOnTimeoutBuilder tb : timeoutBuilders) {
+            stateFacade.addTimeout(tb.build());
+        }
         return stateFacade;
     }
 
-    public StateBuilder onEnter(String onEnterCode) {
-        this.onEnterCode = Optional.of(Objects.requireNonNull(Strings.nullToEmpty(onEnterCode)));
+    /**
+     * @param onEnter called with the event causing the transition, or null when entering the start state
+     */
+    public StateBuilder onEnter(Consumer<Object> onEnter) {
+        this.onEnter.add(Objects.requireNonNull(onEnter));
         return this;
     }
 
-    public StateBuilder onExit(String onExitCode) {
-        this.onExitCode = Optional.of(Objects.requireNonNull(Strings.nullToEmpty(onExitCode)));
+    public StateBuilder onExit(Consumer<Object> onExit) {
+        this.onExit.add(Objects.requireNonNull(onExit));
         return this;
     }
 
-    class StateFacade {
+    static class StateFacade {
         private final String name;
         private Class<? extends Annotation> annotationClass;
-        private Set<TransitionBuilder.TransitionFacade> transitions = newHashSet();
+        private final List<Consumer<Object>> onEnter;
+        private final List<Consumer<Object>> onExit;
+        private Set<TransitionBuilder.TransitionFacade> transitions = newLinkedHashSet();
+        private Set<TransitionOnTimeoutBuilder.TransitionOnTimeoutFacade> timeouts = newLinkedHashSet();
 
-        public StateFacade(String name, Class<? extends Annotation> annotationClass, Optional<String> onEnterCode, Optional<String> onExitCode) {
+        public StateFacade(String name, Class<? extends Annotation> annotationClass, List<Consumer<Object>> onEnter, List<Consumer<Object>> onExit) {
             this.name = name;
             this.annotationClass = annotationClass;
+            this.onEnter = newArrayList(onEnter);
+            this.onExit = newArrayList(onExit);
         }
 
         public void addTransition(TransitionBuilder.TransitionFacade transitionFacade) {
             this.transitions.add(transitionFacade);
         }
 
+        public void addTimeout(TransitionOnTimeoutBuilder.TransitionOnTimeoutFacade timeoutFacade) {
+            this.timeouts.add(timeoutFacade);
+        }
+
         public Set<TransitionBuilder.TransitionFacade> getTransitions() {
             return transitions;
         }
 
+        public Set<TransitionOnTimeoutBuilder.TransitionOnTimeoutFacade> getTimeouts() {
+            return timeouts;
+        }
+
+        public List<Consumer<Object>> getOnEnter() {
+            return onEnter;
+        }
+
+        public List<Consumer<Object>> getOnExit() {
+            return onExit;
+        }
+
         public String getName() {
             return name;
         }
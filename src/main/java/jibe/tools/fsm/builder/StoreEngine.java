@@ -0,0 +1,155 @@
+package jibe.tools.fsm.builder;
+
+import jibe.tools.fsm.api.Clock;
+import jibe.tools.fsm.api.StateStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Interprets a {@link TransitionTable} for a whole population of entities whose runtime data lives in a
+ * {@link StateStore} rather than on the heap: one table, one store, any number of keys. Events are dispatched on the
+ * calling thread and timeouts are not scheduled but kept as deadlines in the store, fired by {@link #sweep()}.
+ * Not thread-safe, like the store.
+ */
+public class StoreEngine<E> {
+    private static final Logger LOGGER = LoggerFactory.getLogger(StoreEngine.class);
+
+    private final TransitionTable table;
+    private final StateStore store;
+    private final Clock clock;
+    private long currentKey;
+
+    StoreEngine(TransitionTable table, StateStore store, Clock clock) {
+        this.table = requireNonNull(table);
+        this.store = requireNonNull(store);
+        this.clock = requireNonNull(clock);
+
+        long fingerprint = fingerprint(table);
+        if (store.getFingerprint() == 0) {
+            store.setFingerprint(fingerprint);
+        } else if (store.getFingerprint() != fingerprint) {
+            throw new IllegalStateException("store was written by another fsm definition");
+        }
+    }
+
+    public TransitionTable getFsm() {
+        return table;
+    }
+
+    public StateStore getStore() {
+        return store;
+    }
+
+    /**
+     * @return the key of the entity being dispatched, for actions needing it
+     */
+    public long getCurrentKey() {
+        return currentKey;
+    }
+
+    /**
+     * @return the current state of {@code key}, or null if it has never received an event
+     */
+    public String getState(long key) {
+        int state = store.state(key);
+        return state < 0 ? null : table.stateName(state);
+    }
+
+    /**
+     * Dispatches {@code event} to the entity {@code key}, entering the start state first if the key is new.
+     */
+    public void event(long key, E event) {
+        currentKey = key;
+        int state = store.state(key);
+        if (state < 0) {
+            state = table.start();
+            // as on starting a table engine, no event enters the start state
+            enter(key, state, StateStore.NONE, null);
+        }
+
+        TransitionTable.Row row = table.find(state, event);
+        if (row != null) {
+            transit(key, state, row.to, event, row.action);
+        }
+    }
+
+    /**
+     * Removes the entity {@code key}; a later event starts it over.
+     */
+    public boolean remove(long key) {
+        return store.remove(key);
+    }
+
+    /**
+     * Fires the timeouts whose deadline has passed.
+     *
+     * @return the number of timeouts fired
+     */
+    public int sweep() {
+        long now = clock.currentTimeMillis();
+        // collect first: the store is not to be changed while it reports expired keys
+        long[][] keys = {new long[64]};
+        int[] count = new int[1];
+        store.expired(now, key -> {
+            if (count[0] == keys[0].length) {
+                keys[0] = Arrays.copyOf(keys[0], count[0] * 2);
+            }
+            keys[0][count[0]++] = key;
+        });
+
+        int fired = 0;
+        for (int i = 0; i < count[0]; i++) {
+            long key = keys[0][i];
+            int state = store.state(key);
+            currentKey = key;
+            TransitionTable.TimeoutRow row = table.state(state).timeouts[store.timeout(key)];
+            transit(key, state, row.to, null, null);
+            fired++;
+        }
+        LOGGER.debug("sweep fired: " + fired);
+        return fired;
+    }
+
+    private void transit(long key, int from, int to, Object event, Consumer<Object> action) {
+        run(table.state(from).onExit, event);
+        if (action != null) {
+            action.accept(event);
+        }
+        enter(key, to, from, event);
+    }
+
+    private void enter(long key, int state, int previous, Object event) {
+        TransitionTable.StateRow row = table.state(state);
+        long deadline = 0;
+        int timeout = StateStore.NONE;
+        long now = clock.currentTimeMillis();
+        for (int i = 0; i < row.timeouts.length; i++) {
+            long at = now + row.timeouts[i].timeUnit.toMillis(row.timeouts[i].period);
+            if ((timeout < 0) || (at < deadline)) {
+                deadline = Math.max(1, at);
+                timeout = i;
+            }
+        }
+        store.put(key, state, previous, deadline, timeout);
+        run(row.onEnter, event);
+    }
+
+    private void run(Consumer<Object>[] actions, Object event) {
+        for (Consumer<Object> action : actions) {
+            action.accept(event);
+        }
+    }
+
+    private static long fingerprint(TransitionTable table) {
+        String[] names = new String[table.size()];
+        for (int i = 0; i < names.length; i++) {
+            names[i] = table.stateName(i);
+        }
+        return (((long) Arrays.hashCode(names)) << 32) | (table.size() & 0xffffffffL) | 1;
+    }
+}
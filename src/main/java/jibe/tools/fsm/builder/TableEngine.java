@@ -0,0 +1,262 @@
+package jibe.tools.fsm.builder;
+
+import com.google.common.base.Optional;
+import com.google.common.base.Throwables;
+import com.google.common.util.concurrent.AbstractExecutionThreadService;
+import jibe.tools.fsm.api.Engine;
+import jibe.tools.fsm.core.VirtualTimeScheduler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.function.Consumer;
+
+/**
+ * Interprets a {@link TransitionTable}. Same threading model as the annotation-driven engine: one loop thread taking
+ * events off a bounded queue, or the calling thread when the configuration is inline, which takes a virtual clock.
+ */
+public class TableEngine<E> extends AbstractExecutionThreadService implements Engine<TransitionTable, E> {
+    private static final Logger LOGGER = LoggerFactory.getLogger(TableEngine.class);
+    private static final Object START = new Object();
+    private static final Object STOP = new Object();
+    private static final ScheduledFuture<?>[] NO_TIMEOUTS = new ScheduledFuture<?>[0];
+
+    private final TransitionTable table;
+    private final Configuration configuration;
+    private final BlockingQueue<Object> queue;
+    private final ExecutorService executorService;
+    private final ScheduledExecutorService scheduledExecutorService;
+    private final boolean ownsExecutorService;
+    private final boolean ownsScheduledExecutorService;
+    private final Deque<Object> pending = new ArrayDeque<>();
+    private ScheduledFuture<?>[] timeouts = NO_TIMEOUTS;
+    private volatile int currentState = -1;
+    private long epoch;
+    private boolean inline;
+    private boolean dispatching;
+
+    TableEngine(TransitionTable table, Configuration configuration) {
+        this.table = table;
+        this.configuration = configuration;
+        this.queue = new LinkedBlockingQueue<>(configuration.getQueueSize());
+        // pools are only created, and shut down, by the engine when none were given to it to share
+        ownsExecutorService = configuration.getExecutorService() == null;
+        executorService = ownsExecutorService
+                ? Executors.newFixedThreadPool(10, configuration.getThreadFactory()) : configuration.getExecutorService();
+        ownsScheduledExecutorService = configuration.getScheduledExecutorService() == null;
+        scheduledExecutorService = ownsScheduledExecutorService
+                ? Executors.newScheduledThreadPool(10, configuration.getThreadFactory()) : configuration.getScheduledExecutorService();
+    }
+
+    @Override
+    public TransitionTable getFsm() {
+        return table;
+    }
+
+    @Override
+    public Engine start() {
+        if (configuration.getInline()) {
+            // timers on a pool would send events from its threads, racing with the thread dispatching inline
+            if (!(scheduledExecutorService instanceof VirtualTimeScheduler)) {
+                throw new IllegalStateException("inline engines need a VirtualTimeScheduler, see ConfigurationBuilder.virtualTime");
+            }
+            inline = true;
+            queue(START);
+            return this;
+        }
+        startAsync().awaitRunning();
+        return this;
+    }
+
+    @Override
+    public Engine stop() {
+        if (inline) {
+            queue(STOP);
+            return this;
+        }
+        stopAsync().awaitTerminated();
+        return this;
+    }
+
+    @Override
+    public void event(E event) {
+        if (!inline && !isRunning()) {
+            throw new IllegalStateException("not running");
+        }
+        queue(event);
+    }
+
+    @Override
+    public Configuration getConfiguration() {
+        return configuration;
+    }
+
+    @Override
+    public Snapshot getSnapshot() {
+        return () -> {
+            int state = currentState;
+            return state < 0 ? Optional.absent() : Optional.<Object>of(table.stateName(state));
+        };
+    }
+
+    private void queue(Object event) {
+        if (inline) {
+            pending.add(event);
+            if (!dispatching) {
+                drain();
+            }
+            return;
+        }
+        try {
+            queue.add(event);
+        } catch (Exception e) {
+            throw Throwables.propagate(e);
+        }
+    }
+
+    private void drain() {
+        dispatching = true;
+        try {
+            Object event;
+            while ((event = pending.poll()) != null) {
+                if (STOP == event) {
+                    inline = false;
+                    cancelTimeouts();
+                    pending.clear();
+                    shutDownExecutors();
+                    return;
+                }
+                fire(event);
+            }
+        } finally {
+            dispatching = false;
+        }
+    }
+
+    private void fire(Object event) {
+        if (START == event) {
+            enter(table.start(), null);
+            return;
+        }
+
+        if (event instanceof Timeout) {
+            Timeout timeout = (Timeout) event;
+            if (timeout.epoch == epoch) {
+                TransitionTable.TimeoutRow row = table.state(currentState).timeouts[timeout.index];
+                transit(row.to, event, null);
+            }
+            return;
+        }
+
+        TransitionTable.Row row = table.find(currentState, event);
+        if (row != null) {
+            transit(row.to, event, row.action);
+        }
+    }
+
+    private void transit(int to, Object event, Consumer<Object> action) {
+        cancelTimeouts();
+        run(table.state(currentState).onExit, event);
+        if (action != null) {
+            action.accept(event);
+        }
+        enter(to, event);
+    }
+
+    private void enter(int state, Object event) {
+        epoch++;
+        currentState = state;
+        TransitionTable.StateRow row = table.state(state);
+        run(row.onEnter, event);
+
+        if (row.timeouts.length > 0) {
+            timeouts = new ScheduledFuture<?>[row.timeouts.length];
+            for (int i = 0; i < row.timeouts.length; i++) {
+                final Timeout timeout = new Timeout(epoch, i);
+                timeouts[i] = scheduledExecutorService.schedule(() -> {
+                    if (inline || isRunning()) {
+                        queue(timeout);
+                    }
+                }, row.timeouts[i].period, row.timeouts[i].timeUnit);
+            }
+        }
+    }
+
+    private void cancelTimeouts() {
+        for (ScheduledFuture<?> timeout : timeouts) {
+            timeout.cancel(false);
+        }
+        timeouts = NO_TIMEOUTS;
+    }
+
+    private void run(Consumer<Object>[] actions, Object event) {
+        for (Consumer<Object> action : actions) {
+            action.accept(event);
+        }
+    }
+
+    @Override
+    protected Executor executor() {
+        return executorService;
+    }
+
+    @Override
+    protected void startUp() throws Exception {
+        LOGGER.info("startUp");
+        queue(START);
+    }
+
+    @Override
+    protected void shutDown() throws Exception {
+        LOGGER.info("shutDown");
+        cancelTimeouts();
+        shutDownExecutors();
+    }
+
+    /**
+     * Shuts down the pools the engine created itself; shared ones are left alone.
+     */
+    private void shutDownExecutors() {
+        if (ownsExecutorService) {
+            executorService.shutdownNow();
+        }
+        if (ownsScheduledExecutorService) {
+            scheduledExecutorService.shutdownNow();
+        }
+    }
+
+    @Override
+    protected void triggerShutdown() {
+        queue(STOP);
+    }
+
+    @Override
+    protected void run() throws Exception {
+        while (isRunning()) {
+            Object event = queue.take();
+            if (STOP == event) {
+                break;
+            }
+            fire(event);
+        }
+        LOGGER.debug("Leaving main-loop");
+    }
+
+    private static class Timeout {
+        private final long epoch;
+        private final int index;
+
+        private Timeout(long epoch, int index) {
+            this.epoch = epoch;
+            this.index = index;
+        }
+    }
+}
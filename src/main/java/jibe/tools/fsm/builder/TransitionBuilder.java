@@ -1,5 +1,8 @@
 package jibe.tools.fsm.builder;
 
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
 /**
  *
  */
@@ -8,6 +11,8 @@ public class TransitionBuilder {
     private final String name;
     public Object event;
     public String toState;
+    private Predicate<Object> guard;
+    private Consumer<Object> action;
 
     public TransitionBuilder(String name) {
         this.name = name;
@@ -18,28 +23,65 @@ public class TransitionBuilder {
         return this;
     }
 
+    /**
+     * The event value this transition fires on, matched with {@code equals}. A {@link Class} matches every event of
+     * that type.
+     */
     public TransitionBuilder onEvent(Object event) {
         this.event = event;
         return this;
     }
 
+    public TransitionBuilder guard(Predicate<Object> guard) {
+        this.guard = guard;
+        return this;
+    }
+
+    public TransitionBuilder action(Consumer<Object> action) {
+        this.action = action;
+        return this;
+    }
+
     public TransitionFacade build() {
-        return new TransitionFacade(name, event, toState);
+        if (toState == null) {
+            throw new IllegalStateException("transition: " + name + " has no toState");
+        }
+        return new TransitionFacade(name, event, toState, guard, action);
     }
 
     class TransitionFacade {
         private final String name;
         private final String toState;
         private final Object event;
+        private final Predicate<Object> guard;
+        private final Consumer<Object> action;
 
-        public TransitionFacade(String name, Object event, String toState) {
+        public TransitionFacade(String name, Object event, String toState, Predicate<Object> guard, Consumer<Object> action) {
             this.name = name;
             this.event = event;
             this.toState = toState;
+            this.guard = guard;
+            this.action = action;
+        }
+
+        public String getName() {
+            return name;
         }
 
         public String getToState() {
             return toState;
         }
+
+        public Object getEvent() {
+            return event;
+        }
+
+        public Predicate<Object> getGuard() {
+            return guard;
+        }
+
+        public Consumer<Object> getAction() {
+            return action;
+        }
     }
 }
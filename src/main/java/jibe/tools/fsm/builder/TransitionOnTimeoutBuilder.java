@@ -1,5 +1,7 @@
 package jibe.tools.fsm.builder;
 
+import java.util.concurrent.TimeUnit;
+
 /**
  *
  */
@@ -7,6 +9,8 @@ public class TransitionOnTimeoutBuilder {
 
     private final String name;
     public String toState;
+    private long period;
+    private TimeUnit timeUnit = TimeUnit.MILLISECONDS;
 
     public TransitionOnTimeoutBuilder(String name) {
         this.name = name;
@@ -17,17 +21,46 @@ public class TransitionOnTimeoutBuilder {
         return this;
     }
 
+    public TransitionOnTimeoutBuilder after(long period, TimeUnit timeUnit) {
+        this.period = period;
+        this.timeUnit = timeUnit;
+        return this;
+    }
+
     public TransitionOnTimeoutFacade build() {
-        return new TransitionOnTimeoutFacade(name, toState);
+        if (toState == null) {
+            throw new IllegalStateException("timeout: " + name + " has no toState");
+        }
+        return new TransitionOnTimeoutFacade(name, toState, period, timeUnit);
     }
 
     class TransitionOnTimeoutFacade {
         private final String name;
         private final String toState;
+        private final long period;
+        private final TimeUnit timeUnit;
 
-        public TransitionOnTimeoutFacade(String name, String toState) {
+        public TransitionOnTimeoutFacade(String name, String toState, long period, TimeUnit timeUnit) {
             this.name = name;
             this.toState = toState;
+            this.period = period;
+            this.timeUnit = timeUnit;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public String getToState() {
+            return toState;
+        }
+
+        public long getPeriod() {
+            return period;
+        }
+
+        public TimeUnit getTimeUnit() {
+            return timeUnit;
         }
     }
 }
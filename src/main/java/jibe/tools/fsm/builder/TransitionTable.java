@@ -0,0 +1,119 @@
+package jibe.tools.fsm.builder;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * Compiled, immutable form of an {@link FSMBuilder} definition: states are indexed by int and every state holds its
+ * transitions keyed by event value, with a fallback list matched on event type.
+ */
+public final class TransitionTable {
+    private final String[] names;
+    private final Map<String, Integer> indexes;
+    private final StateRow[] states;
+    private final int start;
+
+    TransitionTable(String[] names, Map<String, Integer> indexes, StateRow[] states, int start) {
+        this.names = names;
+        this.indexes = indexes;
+        this.states = states;
+        this.start = start;
+    }
+
+    public int size() {
+        return names.length;
+    }
+
+    public String stateName(int state) {
+        return names[state];
+    }
+
+    public int stateIndex(String name) {
+        Integer answer = indexes.get(name);
+        if (answer == null) {
+            throw new IllegalArgumentException("unknown state: " + name);
+        }
+        return answer;
+    }
+
+    int start() {
+        return start;
+    }
+
+    StateRow state(int state) {
+        return states[state];
+    }
+
+    /**
+     * @return the first transition out of {@code state} accepting {@code event}, or null
+     */
+    Row find(int state, Object event) {
+        StateRow row = states[state];
+        Row[] candidates = row.byValue.get(event);
+        if (candidates != null) {
+            for (Row r : candidates) {
+                if (r.accepts(event)) {
+                    return r;
+                }
+            }
+        }
+        for (Row r : row.byType) {
+            if (r.type.isInstance(event) && r.accepts(event)) {
+                return r;
+            }
+        }
+        return null;
+    }
+
+    static final class StateRow {
+        final Consumer<Object>[] onEnter;
+        final Consumer<Object>[] onExit;
+        final Map<Object, Row[]> byValue;
+        final Row[] byType;
+        final TimeoutRow[] timeouts;
+
+        StateRow(Consumer<Object>[] onEnter, Consumer<Object>[] onExit, Map<Object, Row[]> byValue, Row[] byType, TimeoutRow[] timeouts) {
+            this.onEnter = onEnter;
+            this.onExit = onExit;
+            this.byValue = byValue;
+            this.byType = byType;
+            this.timeouts = timeouts;
+        }
+    }
+
+    static final class Row {
+        final String name;
+        final Class<?> type;
+        final Predicate<Object> guard;
+        final Consumer<Object> action;
+        final int to;
+
+        Row(String name, Class<?> type, Predicate<Object> guard, Consumer<Object> action, int to) {
+            this.name = name;
+            this.type = type;
+            this.guard = guard;
+            this.action = action;
+            this.to = to;
+        }
+
+        boolean accepts(Object event) {
+            return (guard == null) || guard.test(event);
+        }
+    }
+
+    static final class TimeoutRow {
+        final String name;
+        final long period;
+        final TimeUnit timeUnit;
+        final int to;
+
+        TimeoutRow(String name, long period, TimeUnit timeUnit, int to) {
+            this.name = name;
+            this.period = period;
+            this.timeUnit = timeUnit;
+            this.to = to;
+        }
+    }
+}
@@ -3,28 +3,60 @@ package jibe.tools.fsm.core;
 import com.google.common.base.Optional;
 import com.google.common.base.Throwables;
 import com.google.common.util.concurrent.AbstractExecutionThreadService;
+import jibe.tools.fsm.annotations.Action;
 import jibe.tools.fsm.annotations.StateMachine;
 import jibe.tools.fsm.annotations.TimerEvent;
+import jibe.tools.fsm.api.Clock;
 import jibe.tools.fsm.api.Context;
+import jibe.tools.fsm.api.Discovery;
 import jibe.tools.fsm.api.Engine;
+import jibe.tools.fsm.api.EventFilter;
+import jibe.tools.fsm.api.Journal;
+import jibe.tools.fsm.api.StateInstances;
+import jibe.tools.fsm.api.StreamOverflow;
+import jibe.tools.fsm.api.Supervision;
+import jibe.tools.fsm.jfr.ActionEvent;
+import jibe.tools.fsm.jfr.EngineEvent;
+import jibe.tools.fsm.jfr.QueueFullEvent;
+import jibe.tools.fsm.jfr.TimeoutEvent;
+import jibe.tools.fsm.jfr.TransitionEvent;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
 import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+import java.util.function.Consumer;
 
+import static com.google.common.collect.Lists.newArrayList;
 import static com.google.common.collect.Maps.newHashMap;
 import static com.google.common.collect.Sets.newHashSet;
 import static com.google.common.util.concurrent.MoreExecutors.platformThreadFactory;
@@ -37,28 +69,98 @@ import static java.util.concurrent.Executors.newScheduledThreadPool;
  */
 public class DefaultEngine<F, E> extends AbstractExecutionThreadService implements Engine<F, E> {
     private static final Logger LOGGER = LoggerFactory.getLogger(DefaultEngine.class);
-    private final Configuration configuration;
+    /*
+     * Counters written only by the thread dispatching and read by management: an ordered store publishes them without
+     * the fence of a volatile write.
+     */
+    @SuppressWarnings("rawtypes")
+    private static final AtomicLongFieldUpdater<DefaultEngine> TRANSITION_COUNT =
+            AtomicLongFieldUpdater.newUpdater(DefaultEngine.class, "transitionCount");
+    @SuppressWarnings("rawtypes")
+    private static final AtomicLongFieldUpdater<DefaultEngine> DISPATCHED =
+            AtomicLongFieldUpdater.newUpdater(DefaultEngine.class, "dispatched");
+    @SuppressWarnings("rawtypes")
+    private static final AtomicLongFieldUpdater<DefaultEngine> FAILURE_COUNT =
+            AtomicLongFieldUpdater.newUpdater(DefaultEngine.class, "failureCount");
+    private final DefaultConfiguration configuration;
     private final F fsm;
     private Map<Class<?>, Object> instanceMap = newHashMap();
     private ExecutorService executorService;
     private ScheduledExecutorService scheduledExecutorService;
+    private boolean ownsExecutorService;
+    private boolean ownsScheduledExecutorService;
     private DefaultContext context;
     private EngineHelper helper;
     private BlockingQueue<E> queue;
     private CountDownLatch startLatch = new CountDownLatch(1);
     private Map<Object, ScheduledFuture> scheduledFutures = newHashMap();
-
-    private final static Object DUDE = new Object();
+    private Journal<E> journal;
+    private long processedSequence;
+    private Class<?> recoveredState;
+    private final Map<Long, Object> replay = new LinkedHashMap<>();
+    private boolean inline;
+    private boolean dispatching;
+    private final Deque<Object> pending = new ArrayDeque<>();
+    private final Deque<Object> raised = new ArrayDeque<>();
+    private volatile long transitionCount;
+    private volatile EngineHelper.StateModel currentModel;
+    private EngineHelper.EnumTable enumTable;
+    private final Object[] eventArgs = new Object[1];
+    private final Object[] fsmArgs;
+    private String fsmName;
+    private Clock clock;
+    private TransitionRecorder transitionRecorder;
+    private TransitionStream transitionStream;
+    private StateInstances stateInstances;
+    private volatile boolean threadless;
+    private volatile boolean hibernated;
+    private volatile long lastActiveNanos;
+    private Queue<Object> mailbox;
+    private final AtomicInteger mailboxSize = new AtomicInteger();
+    private final AtomicBoolean draining = new AtomicBoolean();
+    private final CountDownLatch stopLatch = new CountDownLatch(1);
+    private volatile EngineSubscriber<E> subscriber;
+    private volatile EventFilter eventFilter;
+    private final AtomicInteger unfinished = new AtomicInteger();
+    private final AtomicLong filtered = new AtomicLong();
+    private Map<Class<?>, Long> eventDeadlines;
+    private Consumer<Object> deadLetters;
+    private Consumer<Object> dispatchListener;
+    private final AtomicLong expired = new AtomicLong();
+    private volatile int queueLimit;
+    private volatile boolean paused;
+    private final Object pauseLock = new Object();
+    private volatile long dispatched;
+    private EngineManagement management;
+    private Supervision supervision;
+    private int consecutiveFailures;
+    private volatile long failureCount;
+    private ScheduledFuture<?> idleCheck;
+    private volatile boolean started;
+    private final DefaultEngine<?, E> parent;
+    private DefaultEngine<?, E>[] regions = NO_REGIONS;
+    private RegionTask[] regionTasks;
+    private ForkJoinPool regionPool;
+
+    private final Object DUDE = new Object();
+    private final static DefaultEngine[] NO_REGIONS = new DefaultEngine[0];
+    private final static Object[] NO_ARGS = new Object[0];
 
     DefaultEngine(F fsm) {
         this(fsm, new DefaultConfiguration());
     }
 
     DefaultEngine(F fsm, Configuration configuration) {
-        if (fsm.getClass().getAnnotation(StateMachine.class) == null) {
+        this(null, fsm, configuration);
+    }
+
+    private DefaultEngine(DefaultEngine<?, E> parent, F fsm, Configuration configuration) {
+        if ((parent == null) && (fsm.getClass().getAnnotation(StateMachine.class) == null)) {
             throw new RuntimeException("fsm: " + fsm + " need to be annotated with @" + StateMachine.class.getName());
         }
+        this.parent = parent;
         this.fsm = fsm;
+        this.fsmArgs = new Object[]{ fsm };
         this.configuration = new DefaultConfiguration().merge(configuration);
 
         if (fsm instanceof Listener) {
@@ -74,17 +176,76 @@ public class DefaultEngine<F, E> extends AbstractExecutionThreadService implemen
 
     private void configure(Configuration configuration) {
         helper = new EngineHelper(this);
+        fsmName = helper.getFsmName();
         context = new DefaultContext();
-        queue = new LinkedBlockingQueue<>(configuration.getQueueSize());
-//        ThreadFactory threadFactory = configuration.getThreadFactory();
-        executorService = configuration.getExecutorService();
-        scheduledExecutorService = configuration.getScheduledExecutorService();
+        stateInstances = this.configuration.getStateInstances();
+        injectContext();
+        queueLimit = this.configuration.getQueueSize();
+        if (!this.configuration.getInline() && (this.configuration.getHibernateAfterMillis() == 0)) {
+            queue = new ArrayBlockingQueue<>(Math.max(queueLimit, this.configuration.getMaxQueueSize()));
+        }
+        // pools are only created, and shut down, by the engine when none were given to it to share
+        executorService = this.configuration.getExecutorService();
+        ownsExecutorService = executorService == null;
+        if (ownsExecutorService) {
+            executorService = newFixedThreadPool(10, this.configuration.getThreadFactory());
+            this.configuration.setExecutorService(executorService);
+        }
+        scheduledExecutorService = this.configuration.getScheduledExecutorService();
+        ownsScheduledExecutorService = scheduledExecutorService == null;
+        if (ownsScheduledExecutorService) {
+            scheduledExecutorService = newScheduledThreadPool(10, this.configuration.getThreadFactory());
+            this.configuration.setScheduledExecutorService(scheduledExecutorService);
+        }
+        journal = this.configuration.getJournal();
+        clock = this.configuration.getClock();
+        int transitionHistory = this.configuration.getTransitionHistory();
+        transitionRecorder = transitionHistory > 0 ? new TransitionRecorder(transitionHistory) : null;
+        eventFilter = this.configuration.getEventFilter();
+        eventDeadlines = this.configuration.getEventDeadlines();
+        deadLetters = this.configuration.getDeadLetters();
+        dispatchListener = this.configuration.getDispatchListener();
+        supervision = this.configuration.getSupervision();
+        if ((supervision == Supervision.ErrorState) && (helper.getStateModel(this.configuration.getErrorState()) == null)) {
+            throw new IllegalStateException("error state: " + this.configuration.getErrorState() + " is not a state of: " + fsmName);
+        }
+        int transitionStreamSize = this.configuration.getTransitionStreamSize();
+        transitionStream = transitionStreamSize > 0
+                ? new TransitionStream(transitionStreamSize, this.configuration.getTransitionStreamOverflow()) : null;
+        configureRegions();
+    }
+
+    private void configureRegions() {
+        List<Class<?>> regionClasses = helper.findRegions();
+        if (regionClasses.isEmpty()) {
+            return;
+        }
+        if (journal != null) {
+            throw new IllegalStateException("state machines with regions can not be journaled");
+        }
+        regions = new DefaultEngine[regionClasses.size()];
+        regionTasks = new RegionTask[regionClasses.size()];
+        regionPool = configuration.getRegionPool();
+        for (int i = 0; i < regions.length; i++) {
+            Configuration regionConfiguration = configurationBuilder()
+                    .executorService(executorService)
+                    .scheduledExecutorService(scheduledExecutorService)
+                    .clock(clock)
+                    .classLoader(configuration.getClassLoader())
+                    .transitionHistory(configuration.getTransitionHistory())
+                    .stateInstances(configuration.getStateInstances())
+                    .discovery(Discovery.Declared)
+                    .inline(true)
+                    .build();
+            regions[i] = new DefaultEngine<>(this, instanceMap(regionClasses.get(i)), regionConfiguration);
+            regionTasks[i] = new RegionTask(regions[i]);
+        }
     }
 
     private void timerAtFixedRate(final E timerEvent, long delay, long period, TimeUnit timeUnit) {
         ScheduledFuture<?> scheduledFuture = scheduledExecutorService.scheduleAtFixedRate(() -> {
-            if (isRunning() && getSnapshot().getCurrentState().isPresent()) {
-                event(timerEvent);
+            if (isActive() && started) {
+                owner().event(timerEvent);
             }
         }, delay, period, timeUnit);
 
@@ -93,14 +254,21 @@ public class DefaultEngine<F, E> extends AbstractExecutionThreadService implemen
 
     private void timerAt(final E timerEvent, long delay, TimeUnit timeUnit) {
         ScheduledFuture<?> scheduledFuture = scheduledExecutorService.schedule(() -> {
-            if (isRunning() && getSnapshot().getCurrentState().isPresent()) {
-                event(timerEvent);
+            if (isActive() && started) {
+                owner().event(timerEvent);
             }
         }, delay, timeUnit);
 
         scheduledFutures.put(timerEvent, scheduledFuture);
     }
 
+    /**
+     * Regions share the queue, and thread, of the engine they belong to.
+     */
+    private DefaultEngine<?, E> owner() {
+        return parent != null ? parent.owner() : this;
+    }
+
     @Override
     public F getFsm() {
         return fsm;
@@ -109,9 +277,27 @@ public class DefaultEngine<F, E> extends AbstractExecutionThreadService implemen
     @Override
     public Engine start() {
         LOGGER.debug("start");
+        if (configuration.getInline()) {
+            // timers on a pool would send events from its threads, racing with the thread dispatching inline
+            if (!(scheduledExecutorService instanceof VirtualTimeScheduler)) {
+                throw new IllegalStateException("inline engines need a VirtualTimeScheduler, see ConfigurationBuilder.virtualTime");
+            }
+            startInline();
+            return this;
+        }
+        if (configuration.getHibernateAfterMillis() > 0) {
+            startThreadless();
+            awaitStarted();
+            return this;
+        }
         Engine engine = (Engine) startAsync();
         engine.awaitRunning();
         LOGGER.debug("service running");
+        awaitStarted();
+        return engine;
+    }
+
+    private void awaitStarted() {
         try {
             boolean await = startLatch.await(2, TimeUnit.SECONDS);
             if (!await) {
@@ -120,32 +306,464 @@ public class DefaultEngine<F, E> extends AbstractExecutionThreadService implemen
         } catch (Exception e) {
             throw Throwables.propagate(e);
         }
-        return engine;
     }
 
     @Override
     public Engine stop() {
+        if (subscriber != null) {
+            subscriber.cancel();
+        }
+        resume();
+        if (inline) {
+            engineEvent("stop");
+            queue(ServiceEvent.STOP);
+            for (ScheduledFuture scheduledFuture : scheduledFutures.values()) {
+                scheduledFuture.cancel(false);
+            }
+            stopRegions();
+            if (transitionStream != null) {
+                transitionStream.close();
+            }
+            unregisterMBean();
+            shutDownExecutors();
+            return this;
+        }
+        if (threadless) {
+            queue(ServiceEvent.STOP);
+            try {
+                stopLatch.await();
+            } catch (InterruptedException e) {
+                throw Throwables.propagate(e);
+            }
+            return this;
+        }
         Engine engine = (Engine) stopAsync();
         engine.awaitTerminated();
         return engine;
     }
 
+    /**
+     * Starts the engine without its own thread. Events, and timers fired by advancing the virtual scheduler, are
+     * dispatched on the calling thread, run-to-completion.
+     */
+    void startInline() {
+        if (journal != null) {
+            throw new IllegalStateException("inline engines can not be journaled");
+        }
+        inline = true;
+        try {
+            startUp();
+        } catch (Exception e) {
+            throw Throwables.propagate(e);
+        }
+    }
+
+    /**
+     * Starts the engine without a thread of its own: queued events are drained by a task on the executor, which
+     * returns as soon as the queue is empty. Once nothing has been dispatched for the configured period the engine
+     * hibernates, dropping its lookup caches and all state instances but those of its current state and superstates,
+     * whose data survives, and keeping only the timers still pending on the scheduler. The next event, or timer, wakes
+     * it up again.
+     */
+    private void startThreadless() {
+        mailbox = new ConcurrentLinkedQueue<>();
+        threadless = true;
+        lastActiveNanos = clock.nanoTime();
+        try {
+            startUp();
+        } catch (Exception e) {
+            throw Throwables.propagate(e);
+        }
+        final long idleMillis = configuration.getHibernateAfterMillis();
+        idleCheck = scheduledExecutorService.scheduleAtFixedRate(() -> {
+            if (threadless && !hibernated && (mailboxSize.get() == 0)
+                    && (clock.nanoTime() - lastActiveNanos >= TimeUnit.MILLISECONDS.toNanos(idleMillis))) {
+                queue(ServiceEvent.HIBERNATE);
+            }
+        }, idleMillis, idleMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private void scheduleDrain() {
+        if (draining.compareAndSet(false, true)) {
+            executorService.execute(this::drainMailbox);
+        }
+    }
+
+    private void drainMailbox() {
+        try {
+            Object event;
+            while (!paused && ((event = mailbox.poll()) != null)) {
+                if (ServiceEvent.STOP == event) {
+                    stopThreadless();
+                    return;
+                }
+                if (ServiceEvent.HIBERNATE == event) {
+                    if (mailbox.isEmpty()) {
+                        hibernate();
+                    }
+                    continue;
+                }
+                if (!(event instanceof ServiceEvent)) {
+                    mailboxSize.decrementAndGet();
+                }
+                if (hibernated) {
+                    wakeUp();
+                }
+                dispatch(event);
+                lastActiveNanos = clock.nanoTime();
+            }
+        } catch (RuntimeException e) {
+            LOGGER.error("failed, stopping", e);
+            stopThreadless();
+            return;
+        } finally {
+            draining.set(false);
+        }
+        if (threadless && !paused && !mailbox.isEmpty()) {
+            scheduleDrain();
+        }
+    }
+
+    private void hibernate() {
+        // callers filtering events fill the lookup caches holding the lock, see rejects()
+        synchronized (DUDE) {
+            hibernated = true;
+            helper.release(currentModel, true);
+            instanceMap.clear();
+            // states created later nest in the superstate instances kept, not in fresh ones
+            if (currentModel != null) {
+                for (EngineHelper.StateModel superState : currentModel.ancestors) {
+                    if (superState.instance != null) {
+                        instanceMap.put(superState.cls, superState.instance);
+                    }
+                }
+            }
+            enumTable = null;
+        }
+        LOGGER.debug("hibernating in: {}", context.currentState);
+    }
+
+    private void wakeUp() {
+        hibernated = false;
+        LOGGER.debug("waking up in: {}", context.currentState);
+    }
+
+    private void stopThreadless() {
+        threadless = false;
+        idleCheck.cancel(false);
+        for (ScheduledFuture scheduledFuture : scheduledFutures.values()) {
+            scheduledFuture.cancel(false);
+        }
+        mailbox.clear();
+        try {
+            shutDown();
+        } catch (Exception e) {
+            LOGGER.warn("shutDown failed", e);
+        }
+        stopLatch.countDown();
+    }
+
+    /**
+     * @return true while the engine is hibernating
+     */
+    public boolean isHibernated() {
+        return hibernated;
+    }
+
+    boolean isActive() {
+        return inline || threadless || isRunning();
+    }
+
+    long getTransitionCount() {
+        return transitionCount;
+    }
+
+    /**
+     * @return the last transitions taken, absent when the configured transition history is 0
+     */
+    public Optional<TransitionRecorder> getTransitionRecorder() {
+        return Optional.fromNullable(transitionRecorder);
+    }
+
+    /**
+     * @return the stream to subscribe to for transitions, absent when the configured stream size is 0
+     */
+    public Optional<TransitionStream> getTransitionStream() {
+        return Optional.fromNullable(transitionStream);
+    }
+
+    /**
+     * @return the current state of every region, keyed by region class; empty when the fsm has no regions
+     */
+    public Map<Class<?>, Class<?>> getRegionStates() {
+        Map<Class<?>, Class<?>> answer = new LinkedHashMap<>();
+        for (DefaultEngine<?, E> region : regions) {
+            answer.put(region.fsm.getClass(), region.context.currentState);
+        }
+        return Collections.unmodifiableMap(answer);
+    }
+
     @Override
     public void event(E event) {
-        if (!isRunning()) {
+        tryEvent(event);
+    }
+
+    /**
+     * Sends {@code event} as {@link #event(Object)} does.
+     *
+     * @return false if the {@link EventFilter} dropped it, rather than queue it
+     */
+    public boolean tryEvent(E event) {
+        Long millis = eventDeadlines.isEmpty() ? null : eventDeadlines.get(eventType(event));
+        return event(event, millis != null ? clock.currentTimeMillis() + millis : 0);
+    }
+
+    /**
+     * Sends {@code event}, to be discarded rather than dispatched if it is still queued after {@code timeout}.
+     */
+    public void event(E event, long timeout, TimeUnit timeUnit) {
+        event(event, clock.currentTimeMillis() + timeUnit.toMillis(timeout));
+    }
+
+    private boolean event(E event, long deadlineMillis) {
+        if (!isActive()) {
             throw new IllegalStateException("not running");
         }
+        if ((eventFilter != EventFilter.None) && rejects(event)) {
+            filtered.incrementAndGet();
+            return false;
+        }
         try {
-            queue(event);
+            queue(deadlineMillis != 0 ? new ExpiringEvent(event, deadlineMillis) : event);
         } catch (Exception e) {
             throw Throwables.propagate(e);
         }
+        return true;
+    }
+
+    /**
+     * Whether events of {@code eventType} can do anything in this fsm, or one of its regions.
+     */
+    boolean handles(Class<?> eventType) {
+        if (helper.handles(eventType)) {
+            return true;
+        }
+        for (DefaultEngine<?, E> region : regions) {
+            if (region.handles(eventType)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    static Class<?> eventType(Object event) {
+        return event instanceof Enum ? ((Enum<?>) event).getDeclaringClass() : event.getClass();
+    }
+
+    /**
+     * @return the number of events discarded because their deadline passed while they were queued
+     */
+    public long getExpiredEvents() {
+        return expired.get();
+    }
+
+    /**
+     * Whether the current state can not take {@code event}, as configured by {@link EventFilter}. A verdict not yet
+     * known is worked out holding the engine lock, once per state and event type.
+     */
+    private boolean rejects(Object event) {
+        EngineHelper.StateModel current = currentModel;
+        if ((current == null) || (regions.length > 0) || (event instanceof TransitionOnTimeoutEvent)) {
+            return false;
+        }
+        if ((eventFilter == EventFilter.Idle) && (unfinished.get() > 0)) {
+            return false;
+        }
+        Boolean accepted = current.accepted.get(EngineHelper.acceptedKey(event));
+        if (accepted == null) {
+            synchronized (DUDE) {
+                accepted = helper.accepts(current, event);
+            }
+        }
+        if (!accepted && (eventFilter == EventFilter.Idle)) {
+            // an event may have been sent while we were looking
+            return (unfinished.get() == 0) && (currentModel == current);
+        }
+        return !accepted;
+    }
+
+    /**
+     * @return the number of events dropped by the {@link EventFilter}
+     */
+    public long getFilteredEvents() {
+        return filtered.get();
+    }
+
+    /**
+     * @return a subscriber feeding the engine, requesting no more events than its queue has room for. There is one per
+     * engine and it takes a single subscription; stopping the engine cancels it.
+     */
+    public synchronized Flow.Subscriber<E> subscriber() {
+        if (subscriber == null) {
+            subscriber = new EngineSubscriber<>(this, configuration.getQueueSize());
+        }
+        return subscriber;
+    }
+
+    /**
+     * @return false, rather than throwing, when the queue is full
+     */
+    boolean offer(E event) {
+        if (remainingCapacity() <= 0) {
+            return false;
+        }
+        try {
+            event(event);
+            return true;
+        } catch (IllegalStateException e) {
+            if (isActive() && (remainingCapacity() <= 0)) {
+                return false;
+            }
+            throw e;
+        }
+    }
+
+    int remainingCapacity() {
+        if (inline) {
+            return queueLimit - pending.size();
+        }
+        return queueLimit - queued();
     }
 
+    /**
+     * Dispatches {@code event} and then, run-to-completion, every event raised internally while doing so.
+     */
     private void fire(Object event) {
         synchronized (DUDE) {
+            try {
+                fireOne(event);
+                Object internal;
+                while ((internal = raised.poll()) != null) {
+                    fireOne(internal);
+                }
+            } catch (RuntimeException e) {
+                raised.clear();
+                throw e;
+            }
+        }
+    }
+
+    private void fireOne(Object event) {
+        if (ServiceEvent.START == event) {
+            transit(event);
+            return;
+        }
+        if (regions.length > 0) {
+            fireRegions(event);
+            return;
+        }
+        long begin = System.nanoTime();
+        Class<?> from = context.currentState;
+        long before = transitionCount;
+        try {
+            if (TransitionEvent.enabled() || TimeoutEvent.enabled()) {
+                fireRecorded(event);
+            } else {
+                transit(event);
+            }
+        } catch (RuntimeException e) {
+            if (transitionRecorder != null) {
+                LOGGER.error("failed on: " + event + " in: " + from + ", last transitions:\n" + transitionRecorder);
+            }
+            throw e;
+        }
+        if (transitionCount != before) {
+            if (transitionRecorder != null) {
+                transitionRecorder.record(clock.currentTimeMillis(), System.nanoTime() - begin, from, context.currentState, event.getClass());
+            }
+            if (transitionStream != null) {
+                transitionStream.publish(clock.currentTimeMillis(), System.nanoTime() - begin, from, context.currentState, event.getClass());
+            }
+        }
+    }
+
+    /**
+     * Dispatches to every region, the first on this thread and the others on the region pool, and joins them all
+     * before returning.
+     */
+    private void fireRegions(Object event) {
+        for (int i = 1; i < regionTasks.length; i++) {
+            regionTasks[i].prepare(event);
+            regionPool.execute(regionTasks[i]);
+        }
+        RuntimeException failure = null;
+        try {
+            regions[0].fire(event);
+        } catch (RuntimeException e) {
+            failure = e;
+        }
+        for (int i = 1; i < regionTasks.length; i++) {
+            try {
+                regionTasks[i].join();
+            } catch (RuntimeException e) {
+                if (failure == null) {
+                    failure = e;
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    private void startRegions() {
+        for (DefaultEngine<?, E> region : regions) {
+            region.startInline();
+        }
+    }
+
+    private void stopRegions() {
+        for (DefaultEngine<?, E> region : regions) {
+            if (region.inline) {
+                region.stop();
+            }
+        }
+    }
+
+    private void fireRecorded(Object event) {
+        TransitionEvent transitionEvent = TransitionEvent.enabled() ? new TransitionEvent() : null;
+        TimeoutEvent timeoutEvent = (event instanceof TransitionOnTimeoutEvent) && TimeoutEvent.enabled() ? new TimeoutEvent() : null;
+        if (transitionEvent != null) {
+            transitionEvent.begin();
+        }
+        if (timeoutEvent != null) {
+            timeoutEvent.begin();
+        }
+        Class<?> from = context.currentState;
+        long before = transitionCount;
+
+        transit(event);
+
+        if (transitionCount == before) {
+            return;
+        }
+        if (transitionEvent != null) {
+            transitionEvent.commit(fsmName, from.getName(), context.currentState.getName(), event.getClass().getName());
+        }
+        if (timeoutEvent != null) {
+            timeoutEvent.commit(fsmName, from.getName(), ((TransitionOnTimeoutEvent) event).getName());
+        }
+    }
+
+    private void transit(Object event) {
+        {
             if (ServiceEvent.START == event) {
                 startLatch.countDown();
+                if (regions.length > 0) {
+                    startRegions();
+                    started = true;
+                    return;
+                }
 
                 Optional<Set<Class<?>>> startStates = helper.findStartState();
                 int foundNbrStartStates = startStates.isPresent() ? startStates.get().size() : 0;
@@ -158,76 +776,230 @@ public class DefaultEngine<F, E> extends AbstractExecutionThreadService implemen
                 }
 
                 Class<?> startStateClass = startStates.get().iterator().next();
-
-                executeActionImplied(instanceMap(startStateClass));
-                executeActionOnEnter(instanceMap(startStateClass));
-                context.currentState = startStateClass;
-
-                for (TransitionOnTimeoutEvent e : helper.getTimeoutTransitions(context.currentState)) {
-                    timerAt((E) e, e.getPeriod(), e.getTimeUnit());
+                if (recoveredState != null) {
+                    startStateClass = recoveredState;
                 }
+
+                EngineHelper.StateModel start = helper.getStateModel(startStateClass);
+                enter(start, start.ancestors);
+                started = true;
+                replay();
                 return;
             }
 
-            executeActionImplied(event);
-
-            Class<?> currentStateClass = context.currentState;
-            Optional<Set<Method>> foundTransitions;
+            EngineHelper.StateModel current = currentModel;
+            Method transitionMethod;
             if (event instanceof TransitionOnTimeoutEvent) {
-                foundTransitions = Optional.<Set<Method>>of(newHashSet(((TransitionOnTimeoutEvent) event).getTimeOutMethod()));
+                transitionMethod = ((TransitionOnTimeoutEvent) event).getTimeOutMethod();
+                if (!transitionMethod.getDeclaringClass().equals(current.cls)) {
+                    LOGGER.debug("ignoring stale timeout: {}", event);
+                    return;
+                }
+                executeActions(helper.findActionImplied(event.getClass()), event);
+            } else if (event instanceof Enum) {
+                Enum<?> constant = (Enum<?>) event;
+                EngineHelper.EnumTable table = enumTable;
+                if ((table == null) || (table.type != constant.getDeclaringClass())) {
+                    table = helper.getEnumTable(constant.getDeclaringClass());
+                    enumTable = table;
+                }
+                executeActions(table.implied[constant.ordinal()], event);
+                Object found = table.transitions[current.ordinal][constant.ordinal()];
+                if (found == null) {
+                    return;
+                }
+                if (found == EngineHelper.EnumTable.AMBIGUOUS) {
+                    LOGGER.error("to many transitions found for: " + constant + " in: " + current.cls);
+                    triggerShutdown();
+                    return;
+                }
+                transitionMethod = (Method) found;
             } else {
-                foundTransitions = helper.findTransitionForEvent(currentStateClass, event);
+                executeActions(helper.findActionImplied(event.getClass()), event);
+                Object keyed = helper.findKeyedTransition(current, event);
+                if (keyed == EngineHelper.EnumTable.AMBIGUOUS) {
+                    LOGGER.error("to many transitions found for: " + event + " in: " + current.cls);
+                    triggerShutdown();
+                    return;
+                }
+                if (keyed != null) {
+                    transitionMethod = (Method) keyed;
+                } else {
+                    Method[] foundTransitions = helper.findTransitions(current, event.getClass());
+                    if (foundTransitions.length == 0) {
+                        return;
+                    }
+                    if (foundTransitions.length > 1) {
+                        LOGGER.error("to many transitions found: " + Arrays.toString(foundTransitions));
+                        triggerShutdown();
+                        return;
+                    }
+                    transitionMethod = foundTransitions[0];
+                }
             }
 
-            if (!foundTransitions.isPresent()) {
-                return;
+            EngineHelper.StateModel target = helper.getStateModel(transitionMethod.getReturnType());
+            if (target == null) {
+                throw new RuntimeException("transition returns something that is not a known state");
+            }
+
+            Object result;
+            try {
+                Object source = instance(current.declaring(transitionMethod));
+                if (transitionMethod.getParameterCount() == 1) {
+                    eventArgs[0] = event;
+                    try {
+                        result = transitionMethod.invoke(source, eventArgs);
+                    } finally {
+                        eventArgs[0] = null;
+                    }
+                } else {
+                    result = transitionMethod.invoke(source, NO_ARGS);
+                }
+            } catch (Exception e) {
+                throw Throwables.propagate(e);
             }
-            if (foundTransitions.get().size() > 1) {
-                LOGGER.error("to many transitions found: " + foundTransitions.get());
-                triggerShutdown();
+            if (result == null) {
                 return;
             }
 
-            Method transitionMethod = foundTransitions.get().iterator().next();
-            Optional<Class<?>> foundToState = helper.findStateClass(transitionMethod.getReturnType());
-            if (!foundToState.isPresent()) {
-                throw new RuntimeException("transition returns something that is not a known state");
+            executeActions(current.implied, instance(current));
+            executeActions(current.onExit, instance(current));
+            cancelTimeouts(current);
+
+            EngineHelper.StateModel next = helper.getStateModel(result.getClass());
+            if (next == null) {
+                next = target;
+            } else if (stateInstances != StateInstances.Cached) {
+                adopt(current, next, result);
+            }
+            EngineHelper.StateModel[] superEntries = EngineHelper.NO_STATES;
+            if (current.exits != null) {
+                for (EngineHelper.StateModel superState : current.exits[next.ordinal]) {
+                    executeActions(superState.implied, instance(superState));
+                    executeActions(superState.onExit, instance(superState));
+                }
+                superEntries = current.entries[next.ordinal];
             }
 
-            try {
-                transitionMethod.setAccessible(true);
-                Object[] methodArgs = new Object[0];
-                if (transitionMethod.getParameterTypes().length == 1) {
-                    methodArgs = new Object[]{ event };
+            context.previousState = context.currentState;
+            TRANSITION_COUNT.lazySet(this, transitionCount + 1);
+            enter(next, superEntries);
+        }
+    }
+
+    /**
+     * Makes {@code result} the instance of {@code next}, after {@code current} has run its exit actions.
+     */
+    private void adopt(EngineHelper.StateModel current, EngineHelper.StateModel next, Object result) {
+        Object left = current.instance;
+        if ((stateInstances == StateInstances.Pooled) && (left != null) && (left != result)) {
+            current.release(left);
+        }
+        next.instance = result;
+    }
+
+    private void cancelTimeouts(EngineHelper.StateModel state) {
+        for (TransitionOnTimeoutEvent e : state.timeouts) {
+            ScheduledFuture scheduledFuture = scheduledFutures.get(e);
+            if (scheduledFuture != null) {
+                scheduledFuture.cancel(false);
+            }
+        }
+    }
+
+    private void enter(EngineHelper.StateModel state, EngineHelper.StateModel[] superEntries) {
+        for (EngineHelper.StateModel superState : superEntries) {
+            executeActions(superState.implied, instance(superState));
+            executeActions(superState.onEnter, instance(superState));
+        }
+        executeActions(state.implied, instance(state));
+        executeActions(state.onEnter, instance(state));
+        context.currentState = state.cls;
+        currentModel = state;
+
+        for (TransitionOnTimeoutEvent e : state.timeouts) {
+            timerAt((E) e, e.getPeriod(), e.getTimeUnit());
+        }
+    }
+
+    private Object instance(EngineHelper.StateModel state) {
+        Object answer = state.instance;
+        if (answer == null) {
+            answer = instanceMap(state.cls);
+            state.instance = answer;
+        }
+        return answer;
+    }
+
+    private void replay() {
+        if (replay.isEmpty()) {
+            return;
+        }
+        for (Object event : replay.values()) {
+            if (event instanceof ReplayedTimeout) {
+                String name = ((ReplayedTimeout) event).name;
+                for (TransitionOnTimeoutEvent e : helper.getTimeoutTransitions(context.currentState)) {
+                    if (e.getName().equals(name)) {
+                        fire(e);
+                    }
                 }
-                Object result = transitionMethod.invoke(instanceMap(currentStateClass), methodArgs);
-                if (result == null) {
-                    return;
+            } else if (Replayed.FAILED == event) {
+                // the live engine survived it under supervision; only the error state leaves a trace
+                if ((supervision == Supervision.ErrorState) && (currentModel != null)) {
+                    enterErrorState(currentModel);
                 }
+            } else if (Replayed.EXPIRED != event) {
+                fire(event);
+            }
+        }
+        LOGGER.info("replayed: " + replay.size() + " journaled events");
+        replay.clear();
+    }
 
-                executeActionImplied(instanceMap(currentStateClass));
-                executeActionOnExit(instanceMap(currentStateClass));
-
-                for (TransitionOnTimeoutEvent e : helper.getTimeoutTransitions(currentStateClass)) {
-                    if (scheduledFutures.containsKey(e)) {
-                        scheduledFutures.get(e).cancel(false);
+    private void recover() {
+        journal.recover(new Journal.Replayer<E>() {
+            @Override
+            public void snapshot(long sequence, String currentState) {
+                processedSequence = sequence;
+                try {
+                    Optional<Class<?>> state = helper.findStateClass(Class.forName(currentState, false, configuration.getClassLoader()));
+                    if (state.isPresent()) {
+                        recoveredState = state.get();
+                    } else {
+                        LOGGER.warn("journal snapshot is not a known state: " + currentState);
                     }
+                } catch (ClassNotFoundException e) {
+                    LOGGER.warn("journal snapshot is not a known state: " + currentState);
                 }
+            }
 
-                currentStateClass = result.getClass();
+            @Override
+            public void event(long sequence, E event) {
+                processedSequence = sequence;
+                replay.put(sequence, event);
+            }
 
-                context.previousState = context.currentState;
-                context.currentState = result.getClass();
-            } catch (Exception e) {
-                throw Throwables.propagate(e);
+            @Override
+            public void timeout(long sequence, String timeout) {
+                processedSequence = sequence;
+                replay.put(sequence, new ReplayedTimeout(timeout));
             }
-            executeActionImplied(instanceMap(currentStateClass));
-            executeActionOnEnter(instanceMap(currentStateClass));
 
-            for (TransitionOnTimeoutEvent e : helper.getTimeoutTransitions(currentStateClass)) {
-                timerAt((E) e, e.getPeriod(), e.getTimeUnit());
+            @Override
+            public void failed(long sequence) {
+                if (replay.containsKey(sequence)) {
+                    replay.put(sequence, Replayed.FAILED);
+                }
             }
-        }
+
+            @Override
+            public void expired(long sequence) {
+                if (replay.containsKey(sequence)) {
+                    replay.put(sequence, Replayed.EXPIRED);
+                }
+            }
+        });
     }
 
     private Object instanceMap(Class<?> cls) {
@@ -235,23 +1007,47 @@ public class DefaultEngine<F, E> extends AbstractExecutionThreadService implemen
         if (o != null) {
             return o;
         }
+        o = newInstance(cls);
+        instanceMap.put(cls, o);
+        return o;
+    }
 
+    private <T> T newInstance(Class<T> cls) {
         try {
-            Constructor declaredConstructor = cls.getDeclaredConstructor(fsm.getClass());
+            Class<?> outer = cls.getEnclosingClass();
+            if ((outer != null) && !outer.equals(fsm.getClass()) && cls.isMemberClass() && !Modifier.isStatic(cls.getModifiers())) {
+                // e.g. a state nested in a superstate
+                Constructor<T> declaredConstructor = cls.getDeclaredConstructor(outer);
+                declaredConstructor.setAccessible(true);
+                return declaredConstructor.newInstance(instanceMap(outer));
+            }
+            Constructor<T> declaredConstructor = cls.getDeclaredConstructor(fsm.getClass());
             declaredConstructor.setAccessible(true);
-            instanceMap.put(cls, declaredConstructor.newInstance(fsm));
+            return declaredConstructor.newInstance(fsm);
         } catch (NoSuchMethodException e) {
             try {
-                Constructor declaredConstructor = cls.getDeclaredConstructor();
+                Constructor<T> declaredConstructor = cls.getDeclaredConstructor();
                 declaredConstructor.setAccessible(true);
-                instanceMap.put(cls, declaredConstructor.newInstance());
+                return declaredConstructor.newInstance();
             } catch (Exception e2) {
                 throw Throwables.propagate(e2);
             }
         } catch (Exception e) {
             throw Throwables.propagate(e);
         }
-        return instanceMap.get(cls);
+    }
+
+    private void injectContext() {
+        for (Field f : fsm.getClass().getDeclaredFields()) {
+            if (f.getType().equals(Context.class) && !Modifier.isStatic(f.getModifiers())) {
+                try {
+                    f.setAccessible(true);
+                    f.set(fsm, context);
+                } catch (Exception e) {
+                    throw Throwables.propagate(e);
+                }
+            }
+        }
     }
 
     @Override
@@ -262,45 +1058,35 @@ public class DefaultEngine<F, E> extends AbstractExecutionThreadService implemen
     @Override
     public Snapshot getSnapshot() {
         return () -> {
+            if (regions.length > 0) {
+                return Optional.<Object>of(getRegionStates());
+            }
             synchronized (DUDE) {
                 return Optional.fromNullable(context.currentState);
             }
         };
     }
 
-    private void executeActionImplied(Object obj) {
-        for (Method m : helper.findActionImpliedMethods(obj.getClass())) {
-            executeAction(obj, m);
-        }
-    }
-
-    private void executeActionOnEnter(Object obj) {
-        for (Method m : helper.findActionOnEnterMethods(obj.getClass())) {
-            executeAction(obj, m);
-        }
-    }
-
-    private void executeActionOnExit(Object obj) {
-        for (Method m : helper.findActionOnExitMethods(obj.getClass())) {
-            executeAction(obj, m);
-        }
-    }
-
-    private void executeAction(Object obj, Method m) {
-        Class<?> returnType = m.getReturnType();
-        if (!returnType.equals(Void.TYPE)) {
-            LOGGER.warn("invoking Action with return-type: " + returnType + ". I don't know what to do with it...");
-        }
-
-        try {
-            m.setAccessible(true);
-            if (m.getParameterTypes().length == 1) {
-                m.invoke(obj, fsm);
-            } else {
-                m.invoke(obj);
+    private void executeActions(Method[] actions, Object obj) {
+        for (Method m : actions) {
+            ActionEvent actionEvent = null;
+            if (ActionEvent.enabled()) {
+                actionEvent = new ActionEvent();
+                actionEvent.begin();
+            }
+            try {
+                if (m.getParameterCount() == 1) {
+                    m.invoke(obj, fsmArgs);
+                } else {
+                    m.invoke(obj, NO_ARGS);
+                }
+            } catch (Exception e) {
+                throw Throwables.propagate(e);
+            }
+            if (actionEvent != null) {
+                Action action = m.getAnnotation(Action.class);
+                actionEvent.commit(fsmName, obj.getClass().getName(), m.getName(), action != null ? action.value().name() : null);
             }
-        } catch (Exception e) {
-            throw Throwables.propagate(e);
         }
     }
 
@@ -312,14 +1098,39 @@ public class DefaultEngine<F, E> extends AbstractExecutionThreadService implemen
     @Override
     protected void shutDown() throws Exception {
         LOGGER.info("shutDown");
-        executorService.shutdownNow();
-        scheduledExecutorService.shutdownNow();
+        engineEvent("stop");
+        stopRegions();
+        if (transitionStream != null) {
+            transitionStream.close();
+        }
+        unregisterMBean();
+        shutDownExecutors();
+        if (journal != null) {
+            journal.close();
+        }
+    }
+
+    /**
+     * Shuts down the pools the engine created itself; shared ones are left alone.
+     */
+    private void shutDownExecutors() {
+        if (ownsExecutorService) {
+            executorService.shutdownNow();
+        }
+        if (ownsScheduledExecutorService) {
+            scheduledExecutorService.shutdownNow();
+        }
         LOGGER.debug("executorServices is now shutdown");
     }
 
     @Override
     protected void startUp() throws Exception {
         LOGGER.info("startUp");
+        engineEvent("start");
+        registerMBean();
+        if (journal != null) {
+            recover();
+        }
         scheduleTimerEvents((Set<E>) helper.getTimerEvents());
         queue(ServiceEvent.START);
     }
@@ -340,18 +1151,313 @@ public class DefaultEngine<F, E> extends AbstractExecutionThreadService implemen
         }
     }
 
-    private <T> void queue(T event) {
-        try {
-            queue.add((E) event);
-        } catch (Exception e) {
-            throw Throwables.propagate(e);
+    private <T> void queue(T event) {
+        if ((eventFilter == EventFilter.Idle) && !(event instanceof ServiceEvent)) {
+            unfinished.incrementAndGet();
+            try {
+                queueCounted(event);
+            } catch (RuntimeException e) {
+                unfinished.decrementAndGet();
+                throw e;
+            }
+            return;
+        }
+        queueCounted(event);
+    }
+
+    private <T> void queueCounted(T event) {
+        if (inline) {
+            pending.add(event);
+            if (!dispatching) {
+                drain();
+            }
+            return;
+        }
+        try {
+            if (journal == null) {
+                enqueue(event);
+                return;
+            }
+            synchronized (journal) {
+                if (!(event instanceof ServiceEvent)) {
+                    if (queued() >= queueLimit) {
+                        throw new IllegalStateException("Queue full");
+                    }
+                    if (event instanceof TransitionOnTimeoutEvent) {
+                        journal.appendTimeout(((TransitionOnTimeoutEvent) event).getName());
+                    } else {
+                        // the deadline is not journaled: should the event expire, expire() records it
+                        journal.append((E) ExpiringEvent.unwrap(event));
+                    }
+                }
+                enqueue(event);
+            }
+        } catch (IllegalStateException e) {
+            if (QueueFullEvent.enabled()) {
+                Class<?> state = context.currentState;
+                new QueueFullEvent().commit(fsmName, state != null ? state.getName() : null, ExpiringEvent.unwrap(event).getClass().getName(), queued());
+            }
+            throw e;
+        } catch (Exception e) {
+            throw Throwables.propagate(e);
+        }
+    }
+
+    private void enqueue(Object event) {
+        if (!threadless) {
+            if (!(event instanceof ServiceEvent) && (queue.size() >= queueLimit)) {
+                throw new IllegalStateException("Queue full");
+            }
+            queue.add((E) event);
+            return;
+        }
+        if (!(event instanceof ServiceEvent) && (mailboxSize.incrementAndGet() > queueLimit)) {
+            mailboxSize.decrementAndGet();
+            throw new IllegalStateException("Queue full");
+        }
+        mailbox.add(event);
+        scheduleDrain();
+    }
+
+    private int queued() {
+        return threadless ? mailboxSize.get() : queue.size();
+    }
+
+    private void engineEvent(String phase) {
+        if (EngineEvent.enabled()) {
+            new EngineEvent().commit(fsmName, phase);
+        }
+    }
+
+    private void drain() {
+        dispatching = true;
+        try {
+            Object event;
+            while (!paused && ((event = pending.poll()) != null)) {
+                if (ServiceEvent.STOP == event) {
+                    inline = false;
+                    pending.clear();
+                    return;
+                }
+                dispatch(event);
+            }
+        } finally {
+            dispatching = false;
+        }
+    }
+
+    private void dispatch(Object event) {
+        try {
+            if (!(event instanceof ExpiringEvent)) {
+                fire(event);
+            } else if (clock.currentTimeMillis() <= ((ExpiringEvent) event).deadlineMillis) {
+                fire(((ExpiringEvent) event).event);
+            } else {
+                expire(((ExpiringEvent) event).event);
+            }
+            consecutiveFailures = 0;
+        } catch (RuntimeException e) {
+            supervise(e, ExpiringEvent.unwrap(event));
+        } finally {
+            if (!(event instanceof ServiceEvent)) {
+                DISPATCHED.lazySet(this, dispatched + 1);
+                if (eventFilter == EventFilter.Idle) {
+                    unfinished.updateAndGet(n -> Math.max(0, n - 1));
+                }
+            }
+        }
+        if ((dispatchListener != null) && !(event instanceof ServiceEvent) && !(event instanceof TransitionOnTimeoutEvent)) {
+            dispatchListener.accept(ExpiringEvent.unwrap(event));
+        }
+        if ((journal != null) && (ServiceEvent.START != event)) {
+            journal.processed(++processedSequence, context.currentState.getName());
+        }
+        EngineSubscriber<E> subscriber = this.subscriber;
+        if (subscriber != null) {
+            subscriber.drained();
+        }
+    }
+
+    /**
+     * Applies the configured {@link Supervision} to {@code failure}, thrown dispatching {@code event}.
+     */
+    private void supervise(RuntimeException failure, Object event) {
+        FAILURE_COUNT.lazySet(this, failureCount + 1);
+        consecutiveFailures++;
+        EngineHelper.StateModel current = currentModel;
+        if ((supervision == Supervision.Stop) || (ServiceEvent.START == event) || (current == null)) {
+            throw failure;
+        }
+        LOGGER.warn(supervision + " after failure on: " + event + " in: " + current.cls, failure);
+        if (journal != null) {
+            // dispatched in journal order: the event is the one after the last processed
+            journal.appendFailed(processedSequence + 1);
+        }
+        synchronized (DUDE) {
+            if (supervision == Supervision.Restart) {
+                cancelTimeouts(current);
+                helper.release(current, false);
+                instanceMap.clear();
+                enumTable = null;
+                enter(current, current.ancestors);
+            } else if (supervision == Supervision.ErrorState) {
+                enterErrorState(current);
+            }
+        }
+        long backoff = configuration.getRestartBackoffMillis();
+        if ((supervision == Supervision.Restart) && (backoff > 0)) {
+            backoff = backoff << Math.min(consecutiveFailures - 1, 10);
+            pause();
+            scheduledExecutorService.schedule(this::resume, backoff, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void enterErrorState(EngineHelper.StateModel current) {
+        EngineHelper.StateModel error = helper.getStateModel(configuration.getErrorState());
+        cancelTimeouts(current);
+        context.previousState = context.currentState;
+        TRANSITION_COUNT.lazySet(this, transitionCount + 1);
+        enter(error, current.entries != null ? current.entries[error.ordinal] : error.ancestors);
+    }
+
+    long getFailureCount() {
+        return failureCount;
+    }
+
+    private void expire(Object event) {
+        expired.incrementAndGet();
+        LOGGER.debug("expired: {}", event);
+        if (journal != null) {
+            // journaled before it was queued; dispatched in journal order
+            journal.appendExpired(processedSequence + 1);
+        }
+        if (deadLetters != null) {
+            try {
+                deadLetters.accept(event);
+            } catch (RuntimeException e) {
+                LOGGER.warn("dead-letter handler failed on: " + event, e);
+            }
+        }
+    }
+
+    @Override
+    protected void triggerShutdown() {
+        LOGGER.info("triggerShutdown");
+        queue(ServiceEvent.STOP);
+        synchronized (pauseLock) {
+            pauseLock.notifyAll();
+        }
+    }
+
+    private void awaitResumed() throws InterruptedException {
+        if (paused) {
+            synchronized (pauseLock) {
+                while (paused && isRunning()) {
+                    pauseLock.wait();
+                }
+            }
+        }
+    }
+
+    /**
+     * Stops dispatching: events are queued, up to the queue limit, until {@link #resume()}.
+     */
+    void pause() {
+        paused = true;
+        LOGGER.info("paused");
+    }
+
+    void resume() {
+        if (!paused) {
+            return;
+        }
+        paused = false;
+        LOGGER.info("resumed");
+        synchronized (pauseLock) {
+            pauseLock.notifyAll();
+        }
+        if (threadless) {
+            scheduleDrain();
+        } else if (inline && !dispatching) {
+            drain();
+        }
+    }
+
+    boolean isPaused() {
+        return paused;
+    }
+
+    int getQueueLimit() {
+        return queueLimit;
+    }
+
+    /**
+     * The threaded engine queues into an array sized for {@link Configuration#getMaxQueueSize()}, and the limit can
+     * move anywhere up to that; the other engines have no such bound.
+     */
+    void setQueueLimit(int queueLimit) {
+        if ((queueLimit < 1) || (queueLimit > getQueueCapacity())) {
+            throw new IllegalArgumentException("queue limit must be between 1 and " + getQueueCapacity());
+        }
+        this.queueLimit = queueLimit;
+    }
+
+    int getQueueCapacity() {
+        return queue != null ? Math.max(configuration.getQueueSize(), configuration.getMaxQueueSize()) : Integer.MAX_VALUE;
+    }
+
+    /**
+     * @return the number of events waiting to be dispatched
+     */
+    public int getQueueDepth() {
+        return inline ? pending.size() : queued();
+    }
+
+    long getDispatchedCount() {
+        return dispatched;
+    }
+
+    EventFilter getEventFilter() {
+        return eventFilter;
+    }
+
+    /**
+     * Switching to {@link EventFilter#Idle} at runtime filters as {@link EventFilter#Eager} until the events queued
+     * before the switch are dispatched.
+     */
+    void setEventFilter(EventFilter eventFilter) {
+        this.eventFilter = requireNonNull(eventFilter);
+        unfinished.set(0);
+    }
+
+    int getPendingTimers() {
+        synchronized (DUDE) {
+            int answer = 0;
+            for (ScheduledFuture scheduledFuture : scheduledFutures.values()) {
+                if (!scheduledFuture.isDone()) {
+                    answer++;
+                }
+            }
+            return answer;
+        }
+    }
+
+    String getFsmName() {
+        return fsmName;
+    }
+
+    private void registerMBean() {
+        String group = configuration.getMBeanGroup();
+        if (group != null) {
+            management = EngineManagement.register(this, group);
         }
     }
 
-    @Override
-    protected void triggerShutdown() {
-        LOGGER.info("triggerShutdown");
-        queue(ServiceEvent.STOP);
+    private void unregisterMBean() {
+        if (management != null) {
+            management.unregister();
+            management = null;
+        }
     }
 
     @Override
@@ -359,7 +1465,8 @@ public class DefaultEngine<F, E> extends AbstractExecutionThreadService implemen
         while (isRunning()) {
             Object event = queue.take();
             if (ServiceEvent.STOP != event) {
-                fire(event);
+                awaitResumed();
+                dispatch(event);
             } else {
                 LOGGER.debug("Leaving main-loop");
                 return;
@@ -368,9 +1475,66 @@ public class DefaultEngine<F, E> extends AbstractExecutionThreadService implemen
         LOGGER.debug("Leaving main-loop");
     }
 
+    /**
+     * An event queued with a deadline, after which it is discarded when dequeued.
+     */
+    private static final class ExpiringEvent {
+        private final Object event;
+        private final long deadlineMillis;
+
+        private ExpiringEvent(Object event, long deadlineMillis) {
+            this.event = event;
+            this.deadlineMillis = deadlineMillis;
+        }
+
+        private static Object unwrap(Object event) {
+            return event instanceof ExpiringEvent ? ((ExpiringEvent) event).event : event;
+        }
+    }
+
     private enum ServiceEvent {
         START,
-        STOP
+        STOP,
+        HIBERNATE
+    }
+
+    private static class RegionTask extends RecursiveAction {
+        private final DefaultEngine<?, ?> region;
+        private Object event;
+
+        private RegionTask(DefaultEngine<?, ?> region) {
+            this.region = region;
+        }
+
+        private void prepare(Object event) {
+            reinitialize();
+            this.event = event;
+        }
+
+        @Override
+        protected void compute() {
+            try {
+                region.fire(event);
+            } finally {
+                event = null;
+            }
+        }
+    }
+
+    /**
+     * What recovery found of a journaled event besides the event itself.
+     */
+    private enum Replayed {
+        FAILED,
+        EXPIRED
+    }
+
+    private static class ReplayedTimeout {
+        private final String name;
+
+        private ReplayedTimeout(String name) {
+            this.name = name;
+        }
     }
 
     @SuppressWarnings("unused")
@@ -387,11 +1551,32 @@ public class DefaultEngine<F, E> extends AbstractExecutionThreadService implemen
             return this;
         }
 
+        public ConfigurationBuilder scheduledExecutorService(ScheduledExecutorService scheduledExecutorService) {
+            configuration.setScheduledExecutorService(scheduledExecutorService);
+            return this;
+        }
+
         public ConfigurationBuilder queueSize(int queueSize) {
             configuration.setQueueSize(queueSize);
             return this;
         }
 
+        /**
+         * Room reserved for raising the queue limit at runtime, see {@link EngineMXBean#setQueueLimit(int)}.
+         */
+        public ConfigurationBuilder maxQueueSize(int maxQueueSize) {
+            configuration.setMaxQueueSize(maxQueueSize);
+            return this;
+        }
+
+        /**
+         * Registers the engine, while it runs, as an {@link EngineMXBean} in {@code group}.
+         */
+        public ConfigurationBuilder mbean(String group) {
+            configuration.setMBeanGroup(group);
+            return this;
+        }
+
         public ConfigurationBuilder actionTimeoutMills(long millis) {
             configuration.setActionTimeoutMills(millis);
             return this;
@@ -402,7 +1587,7 @@ public class DefaultEngine<F, E> extends AbstractExecutionThreadService implemen
             return this;
         }
 
-        Configuration build() {
+        public Configuration build() {
             return configuration;
         }
 
@@ -410,6 +1595,130 @@ public class DefaultEngine<F, E> extends AbstractExecutionThreadService implemen
             configuration.setClassLoader(classLoader);
             return this;
         }
+
+        public ConfigurationBuilder clock(Clock clock) {
+            configuration.setClock(clock);
+            return this;
+        }
+
+        /**
+         * For regions, whose events, timers included, are dispatched by their parent; engines of their own run inline
+         * with {@link #virtualTime}.
+         */
+        ConfigurationBuilder inline(boolean inline) {
+            configuration.setInline(inline);
+            return this;
+        }
+
+        /**
+         * Runs the engine inline on a virtual clock: timers fire, deterministically and on the calling thread, only
+         * when {@code scheduler} is advanced.
+         */
+        public ConfigurationBuilder virtualTime(VirtualTimeScheduler scheduler) {
+            configuration.setScheduledExecutorService(scheduler);
+            configuration.setClock(scheduler);
+            configuration.setInline(true);
+            return this;
+        }
+
+        public ConfigurationBuilder discovery(Discovery discovery) {
+            configuration.setDiscovery(discovery);
+            return this;
+        }
+
+        public ConfigurationBuilder states(Class<?>... states) {
+            configuration.addStates(states);
+            return this;
+        }
+
+        public ConfigurationBuilder journal(Journal<?> journal) {
+            configuration.setJournal(journal);
+            return this;
+        }
+
+        public ConfigurationBuilder transitionHistory(int transitions) {
+            configuration.setTransitionHistory(transitions);
+            return this;
+        }
+
+        public ConfigurationBuilder stateInstances(StateInstances stateInstances) {
+            configuration.setStateInstances(stateInstances);
+            return this;
+        }
+
+        /**
+         * Runs the engine without a thread of its own, hibernating it after {@code duration} without events.
+         */
+        public ConfigurationBuilder hibernateAfter(long duration, TimeUnit timeUnit) {
+            configuration.setHibernateAfterMillis(timeUnit.toMillis(duration));
+            return this;
+        }
+
+        public ConfigurationBuilder regionPool(ForkJoinPool regionPool) {
+            configuration.setRegionPool(regionPool);
+            return this;
+        }
+
+        /**
+         * Events of {@code type}, and of an enum when {@code type} is one, sent without a deadline of their own are
+         * discarded if still queued after {@code timeout}.
+         */
+        public ConfigurationBuilder eventDeadline(Class<?> type, long timeout, TimeUnit timeUnit) {
+            configuration.putEventDeadline(type, timeUnit.toMillis(timeout));
+            return this;
+        }
+
+        /**
+         * Receives, on the thread dispatching, the events discarded because their deadline passed.
+         */
+        public ConfigurationBuilder deadLetters(Consumer<Object> deadLetters) {
+            configuration.setDeadLetters(deadLetters);
+            return this;
+        }
+
+        /**
+         * Called, on the thread dispatching, after every event sent to the engine has been dispatched, or discarded.
+         */
+        public ConfigurationBuilder dispatchListener(Consumer<Object> dispatchListener) {
+            configuration.setDispatchListener(dispatchListener);
+            return this;
+        }
+
+        public ConfigurationBuilder supervision(Supervision supervision) {
+            configuration.setSupervision(supervision);
+            return this;
+        }
+
+        /**
+         * Supervises with {@link Supervision#ErrorState}, moving to {@code errorState} when a transition or action throws.
+         */
+        public ConfigurationBuilder errorState(Class<?> errorState) {
+            configuration.setErrorState(errorState);
+            configuration.setSupervision(Supervision.ErrorState);
+            return this;
+        }
+
+        /**
+         * Pause after a first {@link Supervision#Restart}, doubled for every consecutive one; 0 restarts at once.
+         */
+        public ConfigurationBuilder restartBackoff(long duration, TimeUnit timeUnit) {
+            configuration.setRestartBackoffMillis(timeUnit.toMillis(duration));
+            return this;
+        }
+
+        public ConfigurationBuilder eventFilter(EventFilter eventFilter) {
+            configuration.setEventFilter(eventFilter);
+            return this;
+        }
+
+        /**
+         * Publishes transitions through a ring of {@code size} records, see {@link #getTransitionStream()}.
+         */
+        public ConfigurationBuilder transitionStream(int size, StreamOverflow overflow) {
+            configuration.setTransitionStreamSize(size);
+            configuration.setTransitionStreamOverflow(overflow);
+            return this;
+        }
     }
 
     public static class DefaultConfiguration implements Configuration {
@@ -420,15 +1729,41 @@ public class DefaultEngine<F, E> extends AbstractExecutionThreadService implemen
         private long actionTimeoutMills;
         private long transitionTimeoutMills;
         private ClassLoader classLoader;
+        private Journal journal;
+        private Clock clock;
+        private boolean inline;
+        private Discovery discovery;
+        private final Set<Class<?>> states = newHashSet();
+        private int transitionHistory;
+        private ForkJoinPool regionPool;
+        private StateInstances stateInstances;
+        private long hibernateAfterMillis;
+        private int transitionStreamSize;
+        private StreamOverflow transitionStreamOverflow;
+        private EventFilter eventFilter;
+        private final Map<Class<?>, Long> eventDeadlines = newHashMap();
+        private Consumer<Object> deadLetters;
+        private int maxQueueSize;
+        private String mBeanGroup;
+        private Consumer<Object> dispatchListener;
+        private Supervision supervision;
+        private Class<?> errorState;
+        private long restartBackoffMillis;
 
         private DefaultConfiguration() {
             threadFactory = platformThreadFactory();
-            executorService = newFixedThreadPool(10, threadFactory);
-            scheduledExecutorService = newScheduledThreadPool(10, threadFactory);
             queueSize = 1024;
             actionTimeoutMills = 1000;
             transitionTimeoutMills = 1000;
             classLoader = DefaultConfiguration.class.getClassLoader();
+            clock = Clock.SYSTEM;
+            discovery = Discovery.Scan;
+            transitionHistory = 64;
+            regionPool = ForkJoinPool.commonPool();
+            stateInstances = StateInstances.Cached;
+            transitionStreamOverflow = StreamOverflow.Overwrite;
+            eventFilter = EventFilter.None;
+            supervision = Supervision.Stop;
         }
 
         DefaultConfiguration merge(Configuration configuration) {
@@ -464,6 +1799,108 @@ public class DefaultEngine<F, E> extends AbstractExecutionThreadService implemen
                 setClassLoader(classLoader);
             }
 
+            Journal journal = configuration.getJournal();
+            if (journal != null) {
+                setJournal(journal);
+            }
+
+            Clock clock = configuration.getClock();
+            if (clock != null) {
+                setClock(clock);
+            }
+
+            Boolean inline = configuration.getInline();
+            if (inline != null) {
+                setInline(inline);
+            }
+
+            Discovery discovery = configuration.getDiscovery();
+            if (discovery != null) {
+                setDiscovery(discovery);
+            }
+
+            Set<Class<?>> states = configuration.getStates();
+            if (states != null) {
+                addStates(states.toArray(new Class<?>[0]));
+            }
+
+            Integer transitionHistory = configuration.getTransitionHistory();
+            if (transitionHistory != null) {
+                setTransitionHistory(transitionHistory);
+            }
+
+            ForkJoinPool regionPool = configuration.getRegionPool();
+            if (regionPool != null) {
+                setRegionPool(regionPool);
+            }
+
+            StateInstances stateInstances = configuration.getStateInstances();
+            if (stateInstances != null) {
+                setStateInstances(stateInstances);
+            }
+
+            Long hibernateAfterMillis = configuration.getHibernateAfterMillis();
+            if (hibernateAfterMillis != null) {
+                setHibernateAfterMillis(hibernateAfterMillis);
+            }
+
+            Integer transitionStreamSize = configuration.getTransitionStreamSize();
+            if (transitionStreamSize != null) {
+                setTransitionStreamSize(transitionStreamSize);
+            }
+
+            StreamOverflow transitionStreamOverflow = configuration.getTransitionStreamOverflow();
+            if (transitionStreamOverflow != null) {
+                setTransitionStreamOverflow(transitionStreamOverflow);
+            }
+
+            EventFilter eventFilter = configuration.getEventFilter();
+            if (eventFilter != null) {
+                setEventFilter(eventFilter);
+            }
+
+            Map<Class<?>, Long> eventDeadlines = configuration.getEventDeadlines();
+            if (eventDeadlines != null) {
+                for (Map.Entry<Class<?>, Long> e : eventDeadlines.entrySet()) {
+                    putEventDeadline(e.getKey(), e.getValue());
+                }
+            }
+
+            Consumer<Object> deadLetters = configuration.getDeadLetters();
+            if (deadLetters != null) {
+                setDeadLetters(deadLetters);
+            }
+
+            Integer maxQueueSize = configuration.getMaxQueueSize();
+            if (maxQueueSize != null) {
+                setMaxQueueSize(maxQueueSize);
+            }
+
+            String mBeanGroup = configuration.getMBeanGroup();
+            if (mBeanGroup != null) {
+                setMBeanGroup(mBeanGroup);
+            }
+
+            Consumer<Object> dispatchListener = configuration.getDispatchListener();
+            if (dispatchListener != null) {
+                setDispatchListener(dispatchListener);
+            }
+
+            Supervision supervision = configuration.getSupervision();
+            if (supervision != null) {
+                setSupervision(supervision);
+            }
+
+            Class<?> errorState = configuration.getErrorState();
+            if (errorState != null) {
+                setErrorState(errorState);
+            }
+
+            Long restartBackoffMillis = configuration.getRestartBackoffMillis();
+            if (restartBackoffMillis != null) {
+                setRestartBackoffMillis(restartBackoffMillis);
+            }
+
             return this;
         }
 
@@ -522,6 +1959,203 @@ public class DefaultEngine<F, E> extends AbstractExecutionThreadService implemen
             this.classLoader = Objects.requireNonNull(classLoader);
         }
 
+        @Override
+        public Journal getJournal() {
+            return journal;
+        }
+
+        void setJournal(Journal journal) {
+            this.journal = requireNonNull(journal);
+        }
+
+        @Override
+        public Clock getClock() {
+            return clock;
+        }
+
+        void setClock(Clock clock) {
+            this.clock = requireNonNull(clock);
+        }
+
+        @Override
+        public Boolean getInline() {
+            return inline;
+        }
+
+        void setInline(boolean inline) {
+            this.inline = inline;
+        }
+
+        @Override
+        public Discovery getDiscovery() {
+            return discovery;
+        }
+
+        void setDiscovery(Discovery discovery) {
+            this.discovery = requireNonNull(discovery);
+        }
+
+        @Override
+        public Set<Class<?>> getStates() {
+            return Collections.unmodifiableSet(states);
+        }
+
+        void addStates(Class<?>... states) {
+            for (Class<?> state : states) {
+                this.states.add(requireNonNull(state));
+            }
+        }
+
+        @Override
+        public Integer getTransitionHistory() {
+            return transitionHistory;
+        }
+
+        void setTransitionHistory(int transitionHistory) {
+            if (transitionHistory < 0) {
+                throw new RuntimeException("transition history must be a positive number, or 0 to disable it");
+            }
+            this.transitionHistory = transitionHistory;
+        }
+
+        @Override
+        public ForkJoinPool getRegionPool() {
+            return regionPool;
+        }
+
+        void setRegionPool(ForkJoinPool regionPool) {
+            this.regionPool = requireNonNull(regionPool);
+        }
+
+        @Override
+        public StateInstances getStateInstances() {
+            return stateInstances;
+        }
+
+        void setStateInstances(StateInstances stateInstances) {
+            this.stateInstances = requireNonNull(stateInstances);
+        }
+
+        @Override
+        public Long getHibernateAfterMillis() {
+            return hibernateAfterMillis;
+        }
+
+        void setHibernateAfterMillis(long hibernateAfterMillis) {
+            if (hibernateAfterMillis < 0) {
+                throw new RuntimeException("hibernate-after must be a positive number, or 0 to never hibernate");
+            }
+            this.hibernateAfterMillis = hibernateAfterMillis;
+        }
+
+        @Override
+        public Integer getTransitionStreamSize() {
+            return transitionStreamSize;
+        }
+
+        void setTransitionStreamSize(int transitionStreamSize) {
+            if (transitionStreamSize < 0) {
+                throw new RuntimeException("transition stream size must be a positive number, or 0 to disable it");
+            }
+            this.transitionStreamSize = transitionStreamSize;
+        }
+
+        @Override
+        public StreamOverflow getTransitionStreamOverflow() {
+            return transitionStreamOverflow;
+        }
+
+        void setTransitionStreamOverflow(StreamOverflow transitionStreamOverflow) {
+            this.transitionStreamOverflow = requireNonNull(transitionStreamOverflow);
+        }
+
+        @Override
+        public EventFilter getEventFilter() {
+            return eventFilter;
+        }
+
+        void setEventFilter(EventFilter eventFilter) {
+            this.eventFilter = requireNonNull(eventFilter);
+        }
+
+        @Override
+        public Map<Class<?>, Long> getEventDeadlines() {
+            return eventDeadlines;
+        }
+
+        void putEventDeadline(Class<?> type, long millis) {
+            eventDeadlines.put(requireNonNull(type), assertPositiveNotZero(millis));
+        }
+
+        @Override
+        public Consumer<Object> getDeadLetters() {
+            return deadLetters;
+        }
+
+        void setDeadLetters(Consumer<Object> deadLetters) {
+            this.deadLetters = requireNonNull(deadLetters);
+        }
+
+        @Override
+        public Integer getMaxQueueSize() {
+            return maxQueueSize;
+        }
+
+        void setMaxQueueSize(int maxQueueSize) {
+            if (maxQueueSize < 0) {
+                throw new RuntimeException("max queue size must be a positive number, or 0 for the queue size");
+            }
+            this.maxQueueSize = maxQueueSize;
+        }
+
+        @Override
+        public String getMBeanGroup() {
+            return mBeanGroup;
+        }
+
+        void setMBeanGroup(String mBeanGroup) {
+            this.mBeanGroup = requireNonNull(mBeanGroup);
+        }
+
+        @Override
+        public Consumer<Object> getDispatchListener() {
+            return dispatchListener;
+        }
+
+        void setDispatchListener(Consumer<Object> dispatchListener) {
+            this.dispatchListener = requireNonNull(dispatchListener);
+        }
+
+        @Override
+        public Supervision getSupervision() {
+            return supervision;
+        }
+
+        void setSupervision(Supervision supervision) {
+            this.supervision = requireNonNull(supervision);
+        }
+
+        @Override
+        public Class<?> getErrorState() {
+            return errorState;
+        }
+
+        void setErrorState(Class<?> errorState) {
+            this.errorState = requireNonNull(errorState);
+        }
+
+        @Override
+        public Long getRestartBackoffMillis() {
+            return restartBackoffMillis;
+        }
+
+        void setRestartBackoffMillis(long restartBackoffMillis) {
+            if (restartBackoffMillis < 0) {
+                throw new RuntimeException("restart backoff must be a positive number, or 0 to restart at once");
+            }
+            this.restartBackoffMillis = restartBackoffMillis;
+        }
+
         void setActionTimeoutMills(long actionTimeoutMills) {
             this.actionTimeoutMills = assertPositiveNotZero(actionTimeoutMills);
         }
@@ -542,7 +2176,25 @@ public class DefaultEngine<F, E> extends AbstractExecutionThreadService implemen
      *
      */
     private class DefaultContext implements Context {
-        private Class<?> currentState = null;
+        private volatile Class<?> currentState = null;
         private Class<?> previousState = null;
+
+        @Override
+        public <S> S recycle(Class<S> state) {
+            EngineHelper.StateModel model = helper.getStateModel(state);
+            if (model == null) {
+                throw new IllegalArgumentException("not a known state: " + state);
+            }
+            Object answer = stateInstances == StateInstances.Pooled ? model.acquire() : null;
+            return answer != null ? (S) answer : newInstance(state);
+        }
+
+        @Override
+        public void raise(Object event) {
+            if (!Thread.holdsLock(DUDE)) {
+                throw new IllegalStateException("events can only be raised while dispatching, use Engine.event()");
+            }
+            raised.add(requireNonNull(event));
+        }
     }
 }
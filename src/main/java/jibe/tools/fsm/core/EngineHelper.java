@@ -8,13 +8,16 @@ import com.google.common.base.Throwables;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Sets;
 import jibe.tools.fsm.annotations.Action;
+import jibe.tools.fsm.annotations.Region;
 import jibe.tools.fsm.annotations.StartState;
 import jibe.tools.fsm.annotations.State;
 import jibe.tools.fsm.annotations.StateMachine;
+import jibe.tools.fsm.annotations.SuperState;
 import jibe.tools.fsm.annotations.TimerEvent;
 import jibe.tools.fsm.annotations.Transition;
 import jibe.tools.fsm.annotations.TransitionOnTimeout;
 import jibe.tools.fsm.api.ActionType;
+import jibe.tools.fsm.api.Discovery;
 import jibe.tools.fsm.api.Engine;
 import org.reflections.Reflections;
 import org.reflections.scanners.FieldAnnotationsScanner;
@@ -29,13 +32,23 @@ import java.io.File;
 import java.lang.annotation.Annotation;
 import java.lang.reflect.Field;
 import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Member;
+import java.lang.reflect.Modifier;
 import java.lang.reflect.Method;
 import java.net.URL;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import static com.google.common.collect.Iterables.filter;
 import static com.google.common.collect.Iterables.transform;
+import static com.google.common.collect.Lists.newArrayList;
 import static com.google.common.collect.Sets.newHashSet;
 import static jibe.tools.fsm.core.EngineHelper.TypeDefinition.Type.START_STATE;
 import static jibe.tools.fsm.core.EngineHelper.TypeDefinition.Type.STATE;
@@ -53,20 +66,38 @@ public class EngineHelper {
 
     private final Engine engine;
     private final Object fsm;
-    private final Reflections reflections;
+    private Reflections reflections;
+    private final Set<Class<?>> declared;
     private final HashMap<Class<?>, TypeDefinition> typeMap = new HashMap<>();
+    private final Map<Class<?>, StateModel> stateModels = new HashMap<>();
+    private final Map<Class<?>, StateModel> superStateModels = new HashMap<>();
+    private final Map<Class<?>, Method[]> impliedActions = new HashMap<>();
+    private final Map<Class<?>, EnumTable> enumTables = new HashMap<>();
+    private Set<Class<?>> eventTypes;
 
     EngineHelper(Engine engine) {
         this.engine = engine;
         this.fsm = engine.getFsm();
-        reflections = setupReflections(engine.getConfiguration().getClassLoader());
+        Engine.Configuration configuration = engine.getConfiguration();
+        if (configuration.getDiscovery() == Discovery.Declared) {
+            reflections = null;
+            declared = newHashSet(configuration.getStates());
+            addDeclaredClasses(fsm.getClass(), declared);
+        } else {
+            reflections = setupReflections(configuration.getClassLoader());
+            declared = configuration.getStates();
+        }
         try {
             scanStates();
             scanTimers();
             scanTimeouts();
+            buildStateModels();
+            eventTypes = scanEventTypes();
         } catch (Exception e) {
             throw Throwables.propagate(e);
         }
+        // only needed while scanning
+        reflections = null;
     }
 
     Set<Class<?>> getTimerEvents() {
@@ -283,7 +314,83 @@ public class EngineHelper {
         };
     }
 
+    private void addDeclaredClasses(Class<?> cls, Set<Class<?>> answer) {
+        for (Class<?> c : cls.getDeclaredClasses()) {
+            answer.add(c);
+            addDeclaredClasses(c, answer);
+        }
+    }
+
     private <T> Set<T> getAnnotatedWith(Class<T> type, Class<? extends Annotation> annotation) {
+        Set<T> answer = newHashSet(getDeclaredWith(type, annotation));
+        if (reflections != null) {
+            answer.addAll(getScannedWith(type, annotation));
+        }
+        for (Iterator<T> i = answer.iterator(); i.hasNext(); ) {
+            T t = i.next();
+            Class<?> cls = t instanceof Class ? (Class<?>) t : ((Member) t).getDeclaringClass();
+            if (inOtherRegion(cls)) {
+                i.remove();
+            }
+        }
+        return answer;
+    }
+
+    /**
+     * Regions run in engines of their own, so what they declare is not part of this one.
+     */
+    private boolean inOtherRegion(Class<?> cls) {
+        for (Class<?> c = cls; c != null; c = c.getEnclosingClass()) {
+            if (c.equals(fsm.getClass())) {
+                return false;
+            }
+            if (c.isAnnotationPresent(Region.class)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return the regions declared by the fsm, in declaration order
+     */
+    List<Class<?>> findRegions() {
+        List<Class<?>> answer = newArrayList();
+        for (Class<?> c : fsm.getClass().getDeclaredClasses()) {
+            if (c.isAnnotationPresent(Region.class)) {
+                answer.add(c);
+            }
+        }
+        answer.sort(Comparator.comparing(Class::getName));
+        return answer;
+    }
+
+    private <T> Set<T> getDeclaredWith(Class<T> type, Class<? extends Annotation> annotation) {
+        if (declared.isEmpty()) {
+            return Collections.emptySet();
+        }
+        Set<Object> answer = newHashSet();
+        for (Class<?> c : declared) {
+            if (type.equals(Class.class) && c.isAnnotationPresent(annotation)) {
+                answer.add(c);
+            } else if (type.equals(Method.class)) {
+                for (Method m : c.getDeclaredMethods()) {
+                    if (m.isAnnotationPresent(annotation)) {
+                        answer.add(m);
+                    }
+                }
+            } else if (type.equals(Field.class)) {
+                for (Field f : c.getDeclaredFields()) {
+                    if (f.isAnnotationPresent(annotation)) {
+                        answer.add(f);
+                    }
+                }
+            }
+        }
+        return (Set<T>) answer;
+    }
+
+    private <T> Set<T> getScannedWith(Class<T> type, Class<? extends Annotation> annotation) {
         if (type.equals(Field.class)) {
             return (Set<T>) reflections.getFieldsAnnotatedWith(annotation);
         }
@@ -297,11 +404,19 @@ public class EngineHelper {
     }
 
     private String getFsmName(Class<?> fsmClass) {
+        Region region = fsmClass.getAnnotation(Region.class);
+        if (region != null) {
+            return !Strings.isNullOrEmpty(region.name()) ? region.name() : fsmClass.getName();
+        }
         StateMachine annotation = fsmClass.getAnnotation(StateMachine.class);
         if (annotation == null) {
             throw new RuntimeException("fsm: " + fsmClass + " must be annotated with StateMachine");
         }
-        return !Strings.isNullOrEmpty(annotation.name()) ? annotation.name() : fsmClass.getClass().getName();
+        return !Strings.isNullOrEmpty(annotation.name()) ? annotation.name() : fsmClass.getName();
+    }
+
+    String getFsmName() {
+        return getFsmName(fsm.getClass());
     }
 
     private Reflections setupReflections(ClassLoader classLoader) {
@@ -349,8 +464,369 @@ public class EngineHelper {
         return answer;
     }
 
-    Optional<Set<Method>> findTransitionForEvent(Class<?> stateClass, Object event) {
-        Set<Method> transitions = getAllMethods(stateClass, withAnnotation(Transition.class), withParameters(event.getClass()));
+    private void buildStateModels() {
+        for (TypeDefinition<?> typeDefinition : typeMap.values()) {
+            if (typeDefinition.type == TIMER_EVENT) {
+                continue;
+            }
+            Class<?> cls = typeDefinition.cls;
+            stateModels.put(cls, new StateModel(cls, stateModels.size(),
+                    findActionImplied(cls),
+                    accessible(findActionOnEnterMethods(cls)),
+                    accessible(findActionOnExitMethods(cls)),
+                    typeDefinition.timeoutEvents.toArray(new TransitionOnTimeoutEvent[0])));
+            for (TransitionOnTimeoutEvent e : typeDefinition.timeoutEvents) {
+                e.getTimeOutMethod().setAccessible(true);
+            }
+        }
+        buildHierarchy();
+    }
+
+    /**
+     * Resolves superstates once: every state gets its chain of superstates, the state or superstate declaring each of
+     * its transitions, and for every possible target the superstates to exit and to enter, so a transition only walks
+     * arrays.
+     */
+    private void buildHierarchy() {
+        for (Class<?> cls : getAnnotatedWith(Class.class, SuperState.class)) {
+            superStateModels.put(cls, new StateModel(cls, -1,
+                    findActionImplied(cls),
+                    accessible(findActionOnEnterMethods(cls)),
+                    accessible(findActionOnExitMethods(cls)),
+                    new TransitionOnTimeoutEvent[0]));
+        }
+        if (superStateModels.isEmpty()) {
+            return;
+        }
+
+        StateModel[] byOrdinal = new StateModel[stateModels.size()];
+        for (StateModel state : stateModels.values()) {
+            List<StateModel> ancestors = newArrayList();
+            for (Class<?> c = state.cls.getEnclosingClass(); (c != null) && !c.equals(fsm.getClass()); c = c.getEnclosingClass()) {
+                StateModel superState = superStateModels.get(c);
+                if (superState != null) {
+                    ancestors.add(0, superState);
+                }
+            }
+            state.ancestors = ancestors.toArray(NO_STATES);
+            // outermost first, so a state wins over its superstates for a class both inherit
+            ancestors.add(state);
+            for (StateModel level : ancestors) {
+                for (Class<?> c = level.cls; (c != null) && !c.equals(Object.class); c = c.getSuperclass()) {
+                    state.declarers.put(c, level);
+                }
+            }
+            byOrdinal[state.ordinal] = state;
+        }
+
+        for (StateModel from : byOrdinal) {
+            from.exits = new StateModel[byOrdinal.length][];
+            from.entries = new StateModel[byOrdinal.length][];
+            for (StateModel to : byOrdinal) {
+                int common = 0;
+                while ((common < from.ancestors.length) && (common < to.ancestors.length) && (from.ancestors[common] == to.ancestors[common])) {
+                    common++;
+                }
+                StateModel[] exits = new StateModel[from.ancestors.length - common];
+                for (int i = 0; i < exits.length; i++) {
+                    exits[i] = from.ancestors[from.ancestors.length - 1 - i];
+                }
+                from.exits[to.ordinal] = exits.length > 0 ? exits : NO_STATES;
+                StateModel[] entries = Arrays.copyOfRange(to.ancestors, common, to.ancestors.length);
+                from.entries[to.ordinal] = entries.length > 0 ? entries : NO_STATES;
+            }
+        }
+    }
+
+    /**
+     * Drops state instances, and whatever is resolved lazily, for a hibernating engine. They are rebuilt on demand.
+     *
+     * @param keepInstance true to keep the instances of {@code current}, the live state, and of its superstates
+     */
+    void release(StateModel current, boolean keepInstance) {
+        Set<StateModel> kept = Sets.newIdentityHashSet();
+        if (keepInstance && (current != null)) {
+            kept.add(current);
+            kept.addAll(Arrays.asList(current.ancestors));
+        }
+        for (Map<Class<?>, StateModel> models : Arrays.asList(stateModels, superStateModels)) {
+            for (StateModel state : models.values()) {
+                if (!kept.contains(state)) {
+                    state.instance = null;
+                }
+                state.transitions.clear();
+                state.keyedTransitions.clear();
+                while (state.acquire() != null) {
+                    // drain the pool
+                }
+            }
+        }
+        impliedActions.clear();
+        enumTables.clear();
+    }
+
+    /**
+     * Event types some transition, of a state or a superstate, takes.
+     */
+    private Set<Class<?>> scanEventTypes() {
+        Set<Class<?>> answer = newHashSet();
+        for (Map<Class<?>, StateModel> models : Arrays.asList(stateModels, superStateModels)) {
+            for (Class<?> cls : models.keySet()) {
+                for (Method m : getAllMethods(cls, withAnnotation(Transition.class))) {
+                    if (m.getParameterTypes().length == 1) {
+                        answer.add(m.getParameterTypes()[0]);
+                    }
+                }
+            }
+        }
+        return Collections.unmodifiableSet(answer);
+    }
+
+    /**
+     * Whether events of {@code eventType}, for enums their declaring class, can do anything in this fsm: trigger a
+     * transition in some state, or run an implied action declared by the event. Only reflects, so it can be called
+     * without the engine lock.
+     */
+    boolean handles(Class<?> eventType) {
+        return eventTypes.contains(eventType) || !findActionImpliedMethods(eventType).isEmpty();
+    }
+
+    /**
+     * @return the superstate model of {@code cls}, or null
+     */
+    StateModel getSuperStateModel(Class<?> cls) {
+        return superStateModels.get(cls);
+    }
+
+    /**
+     * @return the state model of {@code stateClass}, or null if it is not a known state
+     */
+    StateModel getStateModel(Class<?> stateClass) {
+        return stateModels.get(stateClass);
+    }
+
+    /**
+     * Transitions of {@code state} taking an event of exactly {@code eventClass}. Resolved once per event class and
+     * cached, so the steady-state lookup neither reflects nor allocates.
+     */
+    Method[] findTransitions(StateModel state, Class<?> eventClass) {
+        Method[] answer = state.transitions.get(eventClass);
+        if (answer == null) {
+            Optional<Set<Method>> found = findTransitionForEvent(state.cls, eventClass);
+            for (int i = state.ancestors.length - 1; !found.isPresent() && (i >= 0); i--) {
+                found = findTransitionForEvent(state.ancestors[i].cls, eventClass);
+            }
+            answer = found.isPresent() ? accessible(found.get()) : NO_METHODS;
+            state.transitions.put(eventClass, answer);
+        }
+        return answer;
+    }
+
+    /**
+     * The transition of {@code state} keyed, with {@link Transition#on()}, on the value of {@code event}. The index
+     * is built once per event class, innermost state winning over its superstates.
+     *
+     * @return the transition {@link Method}, null if none is keyed on the event, or {@link EnumTable#AMBIGUOUS}
+     */
+    Object findKeyedTransition(StateModel state, Object event) {
+        Map<Object, Object> index = state.keyedTransitions.get(event.getClass());
+        if (index == null) {
+            index = buildKeyedTransitions(state, event.getClass());
+            state.keyedTransitions.put(event.getClass(), index);
+        }
+        return index.isEmpty() ? null : index.get(event);
+    }
+
+    /**
+     * Whether {@code event} can do anything in {@code state}: trigger a transition, keyed transitions counting for
+     * every value of their event type, or run an implied action. Resolves through the lookup caches, so it has to be
+     * called holding the engine lock; the verdict is kept in a concurrent map, see {@link StateModel#accepted}.
+     */
+    boolean accepts(StateModel state, Object event) {
+        boolean answer;
+        if (event instanceof Enum) {
+            Enum<?> constant = (Enum<?>) event;
+            EnumTable table = getEnumTable(constant.getDeclaringClass());
+            answer = (table.implied[constant.ordinal()].length > 0) || (table.transitions[state.ordinal][constant.ordinal()] != null);
+        } else {
+            Class<?> eventClass = event.getClass();
+            Map<Object, Object> index = state.keyedTransitions.get(eventClass);
+            if (index == null) {
+                index = buildKeyedTransitions(state, eventClass);
+                state.keyedTransitions.put(eventClass, index);
+            }
+            answer = (findActionImplied(eventClass).length > 0) || !index.isEmpty() || (findTransitions(state, eventClass).length > 0);
+        }
+        state.accepted.put(acceptedKey(event), answer);
+        return answer;
+    }
+
+    /**
+     * Enum constants are judged one by one, other events by class.
+     */
+    static Object acceptedKey(Object event) {
+        return event instanceof Enum ? event : event.getClass();
+    }
+
+    private Map<Object, Object> buildKeyedTransitions(StateModel state, Class<?> eventClass) {
+        Map<Object, Object> answer = new HashMap<>();
+        for (int i = state.ancestors.length; i >= 0; i--) {
+            Class<?> cls = i == state.ancestors.length ? state.cls : state.ancestors[i].cls;
+            Map<Object, Object> level = new HashMap<>();
+            for (Method m : getAllMethods(cls, withAnnotation(Transition.class), withParameters(eventClass))) {
+                if (!typeMap.containsKey(m.getReturnType())) {
+                    continue;
+                }
+                for (String name : m.getAnnotation(Transition.class).on()) {
+                    Object key = keyOf(eventClass, name, m);
+                    Object other = level.put(key, m);
+                    if (other != null) {
+                        LOGGER.error("to many transitions found for: " + name + " in: " + cls + ": " + other + ", " + m);
+                        level.put(key, EnumTable.AMBIGUOUS);
+                    }
+                }
+                m.setAccessible(true);
+            }
+            for (Map.Entry<Object, Object> e : level.entrySet()) {
+                answer.putIfAbsent(e.getKey(), e.getValue());
+            }
+        }
+        return answer.isEmpty() ? Collections.emptyMap() : answer;
+    }
+
+    private Object keyOf(Class<?> eventClass, String name, Method transition) {
+        if (eventClass.equals(String.class)) {
+            return name;
+        }
+        try {
+            Method valueOf = eventClass.getMethod("valueOf", String.class);
+            if (Modifier.isStatic(valueOf.getModifiers()) && eventClass.equals(valueOf.getReturnType())) {
+                return valueOf.invoke(null, name);
+            }
+        } catch (NoSuchMethodException e) {
+            // fall through
+        } catch (Exception e) {
+            throw new RuntimeException("transition: " + transition + " is on: " + name + ", which is not a value of: " + eventClass, e);
+        }
+        throw new RuntimeException("transition: " + transition + " is on: " + name + ", but: " + eventClass + " has no valueOf(String)");
+    }
+
+    /**
+     * Implied actions declared by {@code cls}, which may be a state or an event. Cached per class.
+     */
+    Method[] findActionImplied(Class<?> cls) {
+        Method[] answer = impliedActions.get(cls);
+        if (answer == null) {
+            answer = accessible(findActionImpliedMethods(cls));
+            impliedActions.put(cls, answer);
+        }
+        return answer;
+    }
+
+    /**
+     * The {@code [stateOrdinal][eventOrdinal]} dispatch table of {@code enumClass}, built on first use.
+     */
+    EnumTable getEnumTable(Class<?> enumClass) {
+        EnumTable answer = enumTables.get(enumClass);
+        if (answer == null) {
+            answer = buildEnumTable(enumClass);
+            enumTables.put(enumClass, answer);
+        }
+        return answer;
+    }
+
+    private EnumTable buildEnumTable(Class<?> enumClass) {
+        Enum<?>[] constants = (Enum<?>[]) enumClass.getEnumConstants();
+        Object[][] transitions = new Object[stateModels.size()][constants.length];
+        Method[][] implied = new Method[constants.length][];
+        for (Enum<?> constant : constants) {
+            implied[constant.ordinal()] = findActionImplied(constant.getClass());
+        }
+
+        Map<Class<?>, Set<Method>> methodsByClass = new HashMap<>();
+        for (StateModel state : stateModels.values()) {
+            for (Enum<?> constant : constants) {
+                // as for other events: keyed transitions first, then those taking any constant, innermost first
+                Object found = null;
+                for (int pass = 0; (found == null) && (pass < 2); pass++) {
+                    boolean keyed = pass == 0;
+                    for (int i = state.ancestors.length; (found == null) && (i >= 0); i--) {
+                        Class<?> cls = i == state.ancestors.length ? state.cls : state.ancestors[i].cls;
+                        found = findEnumTransition(enumTransitions(cls, enumClass, constants, methodsByClass), constant, cls, keyed);
+                    }
+                }
+                transitions[state.ordinal][constant.ordinal()] = found;
+            }
+        }
+        return new EnumTable(enumClass, transitions, implied);
+    }
+
+    private Set<Method> enumTransitions(Class<?> cls, Class<?> enumClass, Enum<?>[] constants, Map<Class<?>, Set<Method>> methodsByClass) {
+        Set<Method> methods = methodsByClass.get(cls);
+        if (methods != null) {
+            return methods;
+        }
+        methods = getAllMethods(cls, withAnnotation(Transition.class), withParameters(enumClass));
+        for (Method m : methods) {
+            for (String name : m.getAnnotation(Transition.class).on()) {
+                if (!isConstant(constants, name)) {
+                    throw new RuntimeException("transition: " + m + " is on: " + name + ", which is not a constant of: " + enumClass);
+                }
+            }
+            if (!typeMap.containsKey(m.getReturnType())) {
+                LOGGER.warn("transition: " + m + " does not transit to any known state");
+                continue;
+            }
+            m.setAccessible(true);
+        }
+        methodsByClass.put(cls, methods);
+        return methods;
+    }
+
+    /**
+     * @param keyed true for the transitions keyed on {@code constant}, false for those taking any constant
+     * @return the one transition of {@code methods} on {@code constant}, null if none, or {@link EnumTable#AMBIGUOUS}
+     */
+    private Object findEnumTransition(Set<Method> methods, Enum<?> constant, Class<?> cls, boolean keyed) {
+        Method found = null;
+        for (Method m : methods) {
+            String[] on = m.getAnnotation(Transition.class).on();
+            if (!typeMap.containsKey(m.getReturnType()) || ((on.length > 0) != keyed) || (keyed && !isConstant(on, constant.name()))) {
+                continue;
+            }
+            if (found != null) {
+                LOGGER.error("to many transitions found for: " + constant + " in: " + cls + ": " + found + ", " + m);
+                return EnumTable.AMBIGUOUS;
+            }
+            found = m;
+        }
+        return found;
+    }
+
+    private boolean isConstant(Object[] constants, String name) {
+        for (Object constant : constants) {
+            if (constant.toString().equals(name) || ((constant instanceof Enum) && ((Enum<?>) constant).name().equals(name))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private Method[] accessible(Set<Method> methods) {
+        if (methods.isEmpty()) {
+            return NO_METHODS;
+        }
+        for (Method m : methods) {
+            m.setAccessible(true);
+            if ((m.getAnnotation(Action.class) != null) && !m.getReturnType().equals(Void.TYPE)) {
+                LOGGER.warn("Action: " + m + " has return-type: " + m.getReturnType() + ". I don't know what to do with it...");
+            }
+        }
+        return methods.toArray(new Method[0]);
+    }
+
+    private Optional<Set<Method>> findTransitionForEvent(Class<?> stateClass, Class<?> eventClass) {
+        Set<Method> transitions = getAllMethods(stateClass, withAnnotation(Transition.class), withParameters(eventClass), unkeyed());
         if (transitions.isEmpty()) {
             return Optional.absent();
         } else if (transitions.size() > 1) {
@@ -383,6 +859,15 @@ public class EngineHelper {
         return methods;
     }
 
+    private Predicate<Method> unkeyed() {
+        return new Predicate<Method>() {
+            @Override
+            public boolean apply(@Nullable Method input) {
+                return input.getAnnotation(Transition.class).on().length == 0;
+            }
+        };
+    }
+
     private Predicate<Method> withActionType(final ActionType actionType) {
         return new Predicate<Method>() {
             @Override
@@ -392,6 +877,107 @@ public class EngineHelper {
         };
     }
 
+    static final Method[] NO_METHODS = new Method[0];
+    static final StateModel[] NO_STATES = new StateModel[0];
+    private static final int POOL_SIZE = 4;
+
+    /**
+     * Everything the engine needs to dispatch in a state, resolved up front.
+     */
+    static final class StateModel {
+        final Class<?> cls;
+        final int ordinal;
+        final Method[] implied;
+        final Method[] onEnter;
+        final Method[] onExit;
+        final TransitionOnTimeoutEvent[] timeouts;
+        private final Map<Class<?>, Method[]> transitions = new HashMap<>();
+        private final Map<Class<?>, Map<Object, Object>> keyedTransitions = new HashMap<>();
+        /**
+         * Verdicts of {@link EngineHelper#accepts}, read by threads sending events.
+         */
+        final Map<Object, Boolean> accepted = new ConcurrentHashMap<>();
+        Object instance;
+        /**
+         * Enclosing superstates, outermost first.
+         */
+        StateModel[] ancestors = NO_STATES;
+        /**
+         * This state and its superstates, by the classes their transitions may be declared in; empty when the fsm has
+         * no superstates.
+         */
+        private final Map<Class<?>, StateModel> declarers = new HashMap<>();
+        /**
+         * Superstates to exit, innermost first, and to enter, outermost first, indexed by the ordinal of the target
+         * state; null when the fsm has no superstates.
+         */
+        StateModel[][] exits;
+        StateModel[][] entries;
+        private final Object[] pool = new Object[POOL_SIZE];
+        private int pooled;
+
+        private StateModel(Class<?> cls, int ordinal, Method[] implied, Method[] onEnter, Method[] onExit, TransitionOnTimeoutEvent[] timeouts) {
+            this.cls = cls;
+            this.ordinal = ordinal;
+            this.implied = implied;
+            this.onEnter = onEnter;
+            this.onExit = onExit;
+            this.timeouts = timeouts;
+        }
+
+        /**
+         * Keeps {@code instance}, no longer the live state, for a later {@link #acquire()}; dropped if the pool is full.
+         */
+        void release(Object instance) {
+            if (pooled < pool.length) {
+                pool[pooled++] = instance;
+            }
+        }
+
+        /**
+         * @return a released instance, or null
+         */
+        Object acquire() {
+            if (pooled == 0) {
+                return null;
+            }
+            Object answer = pool[--pooled];
+            pool[pooled] = null;
+            return answer;
+        }
+
+        /**
+         * @return the state or superstate whose instance takes {@code transition}, one of this state's transitions
+         */
+        StateModel declaring(Method transition) {
+            StateModel answer = declarers.get(transition.getDeclaringClass());
+            return answer != null ? answer : this;
+        }
+
+        @Override
+        public String toString() {
+            return "StateModel{" + "cls=" + cls + '}';
+        }
+    }
+
+    /**
+     * Transitions for the events of one enum type, indexed by state ordinal and event ordinal. An entry is null when
+     * nothing happens, the transition {@link Method}, or {@link #AMBIGUOUS}.
+     */
+    static final class EnumTable {
+        static final Object AMBIGUOUS = new Object();
+
+        final Class<?> type;
+        final Object[][] transitions;
+        final Method[][] implied;
+
+        private EnumTable(Class<?> type, Object[][] transitions, Method[][] implied) {
+            this.type = type;
+            this.transitions = transitions;
+            this.implied = implied;
+        }
+    }
+
     static class TypeDefinition<T> {
         private final Type type;
         private final Class<T> cls;
@@ -0,0 +1,66 @@
+package jibe.tools.fsm.core;
+
+/**
+ * Management interface of a running engine, registered as {@code jibe.tools.fsm:type=Engine,group=...,name=...} when
+ * configured with {@link DefaultEngine.ConfigurationBuilder#mbean(String)}. Counters are read without synchronizing
+ * with the engine and may lag behind it slightly.
+ */
+public interface EngineMXBean {
+    String getFsm();
+
+    String getCurrentState();
+
+    boolean isHibernated();
+
+    /**
+     * @return the number of events waiting to be dispatched
+     */
+    int getQueueDepth();
+
+    int getQueueLimit();
+
+    /**
+     * Changes how many events may wait before sending one fails with "Queue full"; at most {@link #getQueueCapacity()}.
+     */
+    void setQueueLimit(int queueLimit);
+
+    int getQueueCapacity();
+
+    long getEventsDispatched();
+
+    long getTransitions();
+
+    long getFilteredEvents();
+
+    long getExpiredEvents();
+
+    int getPendingTimers();
+
+    /**
+     * @return the number of events whose transition or action threw
+     */
+    long getFailures();
+
+    /**
+     * @return the {@link jibe.tools.fsm.api.EventFilter} shedding events at the door
+     */
+    String getEventFilter();
+
+    void setEventFilter(String eventFilter);
+
+    /**
+     * @return the number of threads of the engine's executor, or -1 if it can not be resized
+     */
+    int getExecutorPoolSize();
+
+    void setExecutorPoolSize(int poolSize);
+
+    boolean isPaused();
+
+    /**
+     * Stops dispatching; events are queued until {@link #resume()}. Stopping the engine resumes it.
+     */
+    void pause();
+
+    void resume();
+}
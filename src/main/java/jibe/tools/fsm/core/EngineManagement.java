@@ -0,0 +1,173 @@
+package jibe.tools.fsm.core;
+
+import com.google.common.base.Throwables;
+import jibe.tools.fsm.api.EventFilter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * {@link EngineMXBean} of one engine, registered in the platform MBean server for as long as the engine runs.
+ */
+class EngineManagement implements EngineMXBean {
+    private static final Logger LOGGER = LoggerFactory.getLogger(EngineManagement.class);
+    private static final AtomicInteger SEQUENCE = new AtomicInteger();
+
+    private final DefaultEngine<?, ?> engine;
+    private final ObjectName name;
+
+    private EngineManagement(DefaultEngine<?, ?> engine, ObjectName name) {
+        this.engine = engine;
+        this.name = name;
+    }
+
+    static EngineManagement register(DefaultEngine<?, ?> engine, String group) {
+        try {
+            ObjectName name = new ObjectName("jibe.tools.fsm:type=Engine,group=" + ObjectName.quote(group)
+                    + ",name=" + ObjectName.quote(engine.getFsmName() + "-" + SEQUENCE.incrementAndGet()));
+            EngineManagement answer = new EngineManagement(engine, name);
+            ManagementFactory.getPlatformMBeanServer().registerMBean(answer, name);
+            LOGGER.debug("registered: {}", name);
+            return answer;
+        } catch (Exception e) {
+            throw Throwables.propagate(e);
+        }
+    }
+
+    void unregister() {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        try {
+            if (server.isRegistered(name)) {
+                server.unregisterMBean(name);
+            }
+        } catch (Exception e) {
+            LOGGER.warn("could not unregister: " + name, e);
+        }
+    }
+
+    ObjectName getName() {
+        return name;
+    }
+
+    @Override
+    public String getFsm() {
+        return engine.getFsmName();
+    }
+
+    @Override
+    public String getCurrentState() {
+        Object state = engine.getSnapshot().getCurrentState().orNull();
+        return state instanceof Class ? ((Class<?>) state).getName() : String.valueOf(state);
+    }
+
+    @Override
+    public boolean isHibernated() {
+        return engine.isHibernated();
+    }
+
+    @Override
+    public int getQueueDepth() {
+        return engine.getQueueDepth();
+    }
+
+    @Override
+    public int getQueueLimit() {
+        return engine.getQueueLimit();
+    }
+
+    @Override
+    public void setQueueLimit(int queueLimit) {
+        engine.setQueueLimit(queueLimit);
+    }
+
+    @Override
+    public int getQueueCapacity() {
+        return engine.getQueueCapacity();
+    }
+
+    @Override
+    public long getEventsDispatched() {
+        return engine.getDispatchedCount();
+    }
+
+    @Override
+    public long getTransitions() {
+        return engine.getTransitionCount();
+    }
+
+    @Override
+    public long getFilteredEvents() {
+        return engine.getFilteredEvents();
+    }
+
+    @Override
+    public long getExpiredEvents() {
+        return engine.getExpiredEvents();
+    }
+
+    @Override
+    public int getPendingTimers() {
+        return engine.getPendingTimers();
+    }
+
+    @Override
+    public long getFailures() {
+        return engine.getFailureCount();
+    }
+
+    @Override
+    public String getEventFilter() {
+        return engine.getEventFilter().name();
+    }
+
+    @Override
+    public void setEventFilter(String eventFilter) {
+        engine.setEventFilter(EventFilter.valueOf(eventFilter));
+    }
+
+    @Override
+    public int getExecutorPoolSize() {
+        ExecutorService executorService = engine.getConfiguration().getExecutorService();
+        return executorService instanceof ThreadPoolExecutor ? ((ThreadPoolExecutor) executorService).getMaximumPoolSize() : -1;
+    }
+
+    @Override
+    public void setExecutorPoolSize(int poolSize) {
+        ExecutorService executorService = engine.getConfiguration().getExecutorService();
+        if (!(executorService instanceof ThreadPoolExecutor)) {
+            throw new UnsupportedOperationException("executor can not be resized: " + executorService.getClass().getName());
+        }
+        if (poolSize < 1) {
+            throw new IllegalArgumentException("pool size must be at least 1");
+        }
+        ThreadPoolExecutor pool = (ThreadPoolExecutor) executorService;
+        if (poolSize > pool.getMaximumPoolSize()) {
+            pool.setMaximumPoolSize(poolSize);
+            pool.setCorePoolSize(poolSize);
+        } else {
+            pool.setCorePoolSize(poolSize);
+            pool.setMaximumPoolSize(poolSize);
+        }
+    }
+
+    @Override
+    public boolean isPaused() {
+        return engine.isPaused();
+    }
+
+    @Override
+    public void pause() {
+        engine.pause();
+    }
+
+    @Override
+    public void resume() {
+        engine.resume();
+    }
+}
@@ -0,0 +1,105 @@
+package jibe.tools.fsm.core;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.Flow;
+
+/**
+ * Feeds an engine from a {@link Flow.Publisher}. Demand is the free space in the engine's queue: it is requested in
+ * batches as the engine drains, so a fast publisher is throttled rather than overflowing the queue. Events the queue
+ * still turns away, because other producers got there first, are held, never more than was requested, and retried
+ * as the engine drains.
+ */
+class EngineSubscriber<E> implements Flow.Subscriber<E> {
+    private static final Logger LOGGER = LoggerFactory.getLogger(EngineSubscriber.class);
+
+    private final DefaultEngine<?, E> engine;
+    private final int batch;
+    private final Deque<E> held = new ArrayDeque<>();
+    private Flow.Subscription subscription;
+    private long outstanding;
+    private boolean receiving;
+
+    EngineSubscriber(DefaultEngine<?, E> engine, int queueSize) {
+        this.engine = engine;
+        this.batch = Math.max(1, queueSize / 4);
+    }
+
+    @Override
+    public synchronized void onSubscribe(Flow.Subscription subscription) {
+        if (this.subscription != null) {
+            subscription.cancel();
+            return;
+        }
+        this.subscription = subscription;
+        LOGGER.debug("subscribed");
+        replenish();
+    }
+
+    @Override
+    public synchronized void onNext(E event) {
+        outstanding--;
+        receiving = true;
+        try {
+            if (held.isEmpty() && engine.offer(event)) {
+                return;
+            }
+            held.add(event);
+        } catch (RuntimeException e) {
+            LOGGER.warn("engine refused event, cancelling", e);
+            cancel();
+            return;
+        } finally {
+            receiving = false;
+        }
+        replenish();
+    }
+
+    @Override
+    public synchronized void onError(Throwable throwable) {
+        LOGGER.error("publisher failed", throwable);
+        subscription = null;
+    }
+
+    @Override
+    public synchronized void onComplete() {
+        LOGGER.debug("publisher completed");
+        subscription = null;
+    }
+
+    /**
+     * Called by the engine after dispatching an event.
+     */
+    synchronized void drained() {
+        if (receiving) {
+            return;
+        }
+        E event;
+        while (((event = held.peek()) != null) && engine.offer(event)) {
+            held.poll();
+        }
+        replenish();
+    }
+
+    synchronized void cancel() {
+        if (subscription != null) {
+            subscription.cancel();
+            subscription = null;
+        }
+        held.clear();
+    }
+
+    private void replenish() {
+        if ((subscription == null) || !held.isEmpty()) {
+            return;
+        }
+        long free = engine.remainingCapacity() - outstanding;
+        if ((free >= batch) || ((free > 0) && (outstanding == 0))) {
+            outstanding += free;
+            subscription.request(free);
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package jibe.tools.fsm.core;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Broadcasts events to the engines registered with it, delivering each only to those whose fsm declares a transition
+ * taking its type, or for which the event declares an implied action. Which engines take an event type is worked out
+ * once, the first time it is published, and kept until an engine registers or unregisters; so publishing costs the
+ * engines interested, not the engines registered.
+ * <p/>
+ * An engine that is not running, or whose queue is full, is skipped and counted as {@link #getRefused() refused}.
+ */
+public class EventBus {
+    private static final Logger LOGGER = LoggerFactory.getLogger(EventBus.class);
+    private static final DefaultEngine<?, ?>[] NO_ENGINES = new DefaultEngine<?, ?>[0];
+
+    private final List<DefaultEngine<?, ?>> engines = new ArrayList<>();
+    private final Map<Class<?>, DefaultEngine<?, ?>[]> routes = new ConcurrentHashMap<>();
+    private final AtomicLong delivered = new AtomicLong();
+    private final AtomicLong refused = new AtomicLong();
+
+    public synchronized EventBus register(DefaultEngine<?, ?> engine) {
+        if (!engines.contains(engine)) {
+            engines.add(engine);
+            routes.clear();
+        }
+        return this;
+    }
+
+    public synchronized EventBus unregister(DefaultEngine<?, ?> engine) {
+        if (engines.remove(engine)) {
+            routes.clear();
+        }
+        return this;
+    }
+
+    /**
+     * @return the number of engines {@code event} was delivered to
+     */
+    public int publish(Object event) {
+        int answer = 0;
+        for (DefaultEngine<?, ?> engine : route(DefaultEngine.eventType(event))) {
+            if (deliver(engine, event)) {
+                answer++;
+            }
+        }
+        return answer;
+    }
+
+    /**
+     * Publishes {@code events} target by target: every engine is sent all the events it takes, in order, before the
+     * next one is.
+     *
+     * @return the number of deliveries
+     */
+    public int publish(Collection<?> events) {
+        Map<DefaultEngine<?, ?>, List<Object>> batches = new IdentityHashMap<>();
+        for (Object event : events) {
+            for (DefaultEngine<?, ?> engine : route(DefaultEngine.eventType(event))) {
+                List<Object> batch = batches.get(engine);
+                if (batch == null) {
+                    batch = new ArrayList<>();
+                    batches.put(engine, batch);
+                }
+                batch.add(event);
+            }
+        }
+        int answer = 0;
+        for (Map.Entry<DefaultEngine<?, ?>, List<Object>> e : batches.entrySet()) {
+            for (Object event : e.getValue()) {
+                if (deliver(e.getKey(), event)) {
+                    answer++;
+                }
+            }
+        }
+        return answer;
+    }
+
+    /**
+     * @return the engines taking events of {@code eventType}
+     */
+    DefaultEngine<?, ?>[] route(Class<?> eventType) {
+        DefaultEngine<?, ?>[] answer = routes.get(eventType);
+        return answer != null ? answer : resolve(eventType);
+    }
+
+    /**
+     * Holds the lock {@link #register} clears the routes with, so a route is never put back stale.
+     */
+    private synchronized DefaultEngine<?, ?>[] resolve(Class<?> eventType) {
+        DefaultEngine<?, ?>[] answer = routes.get(eventType);
+        if (answer == null) {
+            List<DefaultEngine<?, ?>> found = new ArrayList<>();
+            for (DefaultEngine<?, ?> engine : engines) {
+                if (engine.handles(eventType)) {
+                    found.add(engine);
+                }
+            }
+            answer = found.isEmpty() ? NO_ENGINES : found.toArray(NO_ENGINES);
+            routes.put(eventType, answer);
+        }
+        return answer;
+    }
+
+    @SuppressWarnings("unchecked")
+    private boolean deliver(DefaultEngine<?, ?> engine, Object event) {
+        try {
+            if (engine.isActive() && ((DefaultEngine<?, Object>) engine).offer(event)) {
+                delivered.incrementAndGet();
+                return true;
+            }
+        } catch (RuntimeException e) {
+            LOGGER.warn("engine: " + engine.getFsmName() + " refused: " + event, e);
+        }
+        refused.incrementAndGet();
+        return false;
+    }
+
+    public synchronized int getEngineCount() {
+        return engines.size();
+    }
+
+    public long getDelivered() {
+        return delivered.get();
+    }
+
+    /**
+     * @return the number of deliveries skipped because the engine was not running, or its queue was full
+     */
+    public long getRefused() {
+        return refused.get();
+    }
+}
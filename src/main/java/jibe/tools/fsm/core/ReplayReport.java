@@ -0,0 +1,74 @@
+package jibe.tools.fsm.core;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static com.google.common.collect.Maps.newHashMap;
+
+/**
+ *
+ */
+public class ReplayReport {
+    private final long events;
+    private final long transitions;
+    private final long virtualMillis;
+    private final long wallNanos;
+    private final Map<Class<?>, Integer> finalStates;
+
+    ReplayReport(long events, long transitions, long virtualMillis, long wallNanos, Map<Class<?>, Integer> finalStates) {
+        this.events = events;
+        this.transitions = transitions;
+        this.virtualMillis = virtualMillis;
+        this.wallNanos = wallNanos;
+        this.finalStates = newHashMap(finalStates);
+    }
+
+    public long getEvents() {
+        return events;
+    }
+
+    public long getTransitions() {
+        return transitions;
+    }
+
+    public long getVirtualMillis() {
+        return virtualMillis;
+    }
+
+    public long getWallNanos() {
+        return wallNanos;
+    }
+
+    public double getTransitionsPerSecond() {
+        return perSecond(transitions);
+    }
+
+    public double getEventsPerSecond() {
+        return perSecond(events);
+    }
+
+    public Map<Class<?>, Integer> getFinalStates() {
+        return finalStates;
+    }
+
+    private double perSecond(long count) {
+        return wallNanos > 0 ? (count * (double) TimeUnit.SECONDS.toNanos(1)) / wallNanos : 0;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("ReplayReport{")
+                .append("events=").append(events)
+                .append(", transitions=").append(transitions)
+                .append(", virtualMillis=").append(virtualMillis)
+                .append(", wallMillis=").append(TimeUnit.NANOSECONDS.toMillis(wallNanos))
+                .append(", transitionsPerSecond=").append(String.format("%.0f", getTransitionsPerSecond()))
+                .append(", finalStates={");
+        String separator = "";
+        for (Map.Entry<Class<?>, Integer> e : finalStates.entrySet()) {
+            sb.append(separator).append(e.getKey().getSimpleName()).append('=').append(e.getValue());
+            separator = ", ";
+        }
+        return sb.append("}}").toString();
+    }
+}
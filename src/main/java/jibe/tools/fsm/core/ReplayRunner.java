@@ -0,0 +1,159 @@
+package jibe.tools.fsm.core;
+
+import com.google.common.base.Function;
+import com.google.common.base.Optional;
+import com.google.common.base.Supplier;
+import com.google.common.base.Throwables;
+import com.google.common.collect.Iterators;
+import com.google.common.collect.PeekingIterator;
+import com.google.common.util.concurrent.MoreExecutors;
+import jibe.tools.fsm.api.Discovery;
+import jibe.tools.fsm.api.Engine;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Iterator;
+import java.util.Map;
+
+import static com.google.common.collect.Maps.newHashMap;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Replays recorded events through an fsm definition on the calling thread. Timers run on a
+ * {@link VirtualTimeScheduler} that follows the recorded timestamps, so a recording is replayed as fast as the fsm can
+ * take it rather than in wall-clock time.
+ * <p>
+ * Events carrying a key are dispatched to one engine per key, all sharing the same virtual clock and a direct executor,
+ * and all stopped once the replay is over. Engines are built with {@link Discovery#Declared} discovery, so adding a key
+ * costs no classpath scan: states and timer events have to be nested in the fsm class.
+ */
+public class ReplayRunner<F, E> {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ReplayRunner.class);
+    private static final String NO_KEY = "";
+
+    private final Supplier<F> fsmSupplier;
+
+    private ReplayRunner(Supplier<F> fsmSupplier) {
+        this.fsmSupplier = requireNonNull(fsmSupplier);
+    }
+
+    public static <F, E> ReplayRunner<F, E> newInstance(Supplier<F> fsmSupplier) {
+        return new ReplayRunner<>(fsmSupplier);
+    }
+
+    public static <E> TimestampedEvent<E> event(long timestamp, String key, E event) {
+        return new TimestampedEvent<>(timestamp, key, event);
+    }
+
+    /**
+     * Replays a file with one event per line: {@code timestamp<TAB>[key<TAB>]payload}. Timestamps are in milliseconds,
+     * empty lines and lines starting with {@code #} are skipped.
+     */
+    public ReplayReport run(File file, final Function<String, E> parser) {
+        try (BufferedReader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+            Iterator<String> lines = reader.lines().iterator();
+            return run(Iterators.transform(Iterators.filter(lines, line -> !line.isEmpty() && !line.startsWith("#")),
+                    new Function<String, TimestampedEvent<E>>() {
+                        @Override
+                        public TimestampedEvent<E> apply(String line) {
+                            String[] fields = line.split("\t", 3);
+                            if (fields.length == 2) {
+                                return event(Long.parseLong(fields[0]), NO_KEY, parser.apply(fields[1]));
+                            }
+                            if (fields.length == 3) {
+                                return event(Long.parseLong(fields[0]), fields[1], parser.apply(fields[2]));
+                            }
+                            throw new IllegalArgumentException("malformed event: " + line);
+                        }
+                    }));
+        } catch (IOException e) {
+            throw Throwables.propagate(e);
+        }
+    }
+
+    public ReplayReport run(Iterator<TimestampedEvent<E>> events) {
+        PeekingIterator<TimestampedEvent<E>> iterator = Iterators.peekingIterator(events);
+        if (!iterator.hasNext()) {
+            return new ReplayReport(0, 0, 0, 0, newHashMap());
+        }
+
+        long first = iterator.peek().timestamp;
+        VirtualTimeScheduler scheduler = new VirtualTimeScheduler(first);
+        Engine.Configuration configuration = DefaultEngine.configurationBuilder()
+                .discovery(Discovery.Declared)
+                .executorService(MoreExecutors.newDirectExecutorService())
+                .virtualTime(scheduler)
+                .build();
+        Map<String, DefaultEngine<F, E>> engines = newHashMap();
+
+        try {
+            long count = 0;
+            long start = System.nanoTime();
+            while (iterator.hasNext()) {
+                TimestampedEvent<E> e = iterator.next();
+                scheduler.advanceTo(e.timestamp);
+                DefaultEngine<F, E> engine = engines.get(e.key);
+                if (engine == null) {
+                    engine = new DefaultEngine<>(fsmSupplier.get(), configuration);
+                    engine.start();
+                    engines.put(e.key, engine);
+                }
+                if (engine.isActive()) {
+                    engine.event(e.event);
+                }
+                count++;
+            }
+            long wallNanos = System.nanoTime() - start;
+
+            long transitions = 0;
+            Map<Class<?>, Integer> finalStates = newHashMap();
+            for (DefaultEngine<F, E> engine : engines.values()) {
+                transitions += engine.getTransitionCount();
+                Optional<Object> state = engine.getSnapshot().getCurrentState();
+                if (state.isPresent()) {
+                    Class<?> stateClass = (Class<?>) state.get();
+                    Integer n = finalStates.get(stateClass);
+                    finalStates.put(stateClass, n == null ? 1 : n + 1);
+                }
+            }
+            ReplayReport report = new ReplayReport(count, transitions, scheduler.currentTimeMillis() - first, wallNanos, finalStates);
+            LOGGER.info(report.toString());
+            return report;
+        } finally {
+            for (DefaultEngine<F, E> engine : engines.values()) {
+                if (engine.isActive()) {
+                    engine.stop();
+                }
+            }
+        }
+    }
+
+    public static class TimestampedEvent<E> {
+        private final long timestamp;
+        private final String key;
+        private final E event;
+
+        private TimestampedEvent(long timestamp, String key, E event) {
+            this.timestamp = timestamp;
+            this.key = key == null ? NO_KEY : key;
+            this.event = requireNonNull(event);
+        }
+
+        public long getTimestamp() {
+            return timestamp;
+        }
+
+        public String getKey() {
+            return key;
+        }
+
+        public E getEvent() {
+            return event;
+        }
+    }
+}
@@ -23,6 +23,10 @@ public class TransitionOnTimeoutEvent {
         return timeOutMethod;
     }
 
+    public String getName() {
+        return timeOutMethod.getDeclaringClass().getName() + "#" + timeOutMethod.getName();
+    }
+
     public long getPeriod() {
         return period;
     }
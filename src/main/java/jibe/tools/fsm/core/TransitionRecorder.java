@@ -0,0 +1,99 @@
+package jibe.tools.fsm.core;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Flight recorder keeping the last transitions of an engine in a {@link TransitionRing}, written by the thread
+ * dispatching events without locking or allocating; a dump copies the ring.
+ */
+public class TransitionRecorder {
+    private final TransitionRing ring;
+
+    TransitionRecorder(int size) {
+        ring = new TransitionRing(size);
+    }
+
+    public int capacity() {
+        return ring.capacity();
+    }
+
+    /**
+     * @return the number of transitions recorded since the engine was created
+     */
+    public long written() {
+        return ring.written();
+    }
+
+    void record(long timestampMillis, long durationNanos, Class<?> from, Class<?> to, Class<?> eventType) {
+        ring.write(timestampMillis, durationNanos, from, to, eventType);
+    }
+
+    /**
+     * @return the recorded transitions, oldest first
+     */
+    public List<Entry> dump() {
+        return Collections.unmodifiableList(ring.read(0, ring.written()));
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder answer = new StringBuilder();
+        for (Entry entry : dump()) {
+            answer.append(entry).append('\n');
+        }
+        return answer.toString();
+    }
+
+    public static final class Entry {
+        private final long sequence;
+        private final long timestampMillis;
+        private final long durationNanos;
+        private final Class<?> fromState;
+        private final Class<?> toState;
+        private final Class<?> eventType;
+
+        Entry(long sequence, long timestampMillis, long durationNanos, Class<?> fromState, Class<?> toState, Class<?> eventType) {
+            this.sequence = sequence;
+            this.timestampMillis = timestampMillis;
+            this.durationNanos = durationNanos;
+            this.fromState = fromState;
+            this.toState = toState;
+            this.eventType = eventType;
+        }
+
+        public long getSequence() {
+            return sequence;
+        }
+
+        public long getTimestampMillis() {
+            return timestampMillis;
+        }
+
+        public long getDurationNanos() {
+            return durationNanos;
+        }
+
+        public Class<?> getFromState() {
+            return fromState;
+        }
+
+        public Class<?> getToState() {
+            return toState;
+        }
+
+        public Class<?> getEventType() {
+            return eventType;
+        }
+
+        @Override
+        public String toString() {
+            return "#" + sequence + " @" + timestampMillis + " " + name(fromState) + " -> " + name(toState)
+                    + " on " + name(eventType) + " (" + durationNanos + "ns)";
+        }
+
+        private static String name(Class<?> cls) {
+            return cls != null ? cls.getName() : "null";
+        }
+    }
+}
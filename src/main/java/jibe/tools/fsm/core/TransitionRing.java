@@ -0,0 +1,78 @@
+package jibe.tools.fsm.core;
+
+import java.util.List;
+
+import static com.google.common.collect.Lists.newArrayListWithCapacity;
+
+/**
+ * Preallocated ring of transition records, shared by the {@link TransitionRecorder} and the {@link TransitionStream}.
+ * There is a single writer, the thread dispatching events, which neither locks nor allocates; readers copy a range of
+ * the ring and drop whatever the writer overwrote while they were copying.
+ */
+final class TransitionRing {
+    private final int capacity;
+    private final int mask;
+    private final long[] timestamps;
+    private final long[] durations;
+    private final Class<?>[] fromStates;
+    private final Class<?>[] toStates;
+    private final Class<?>[] eventTypes;
+    private volatile long written;
+
+    /**
+     * @param size the number of records kept; the ring has more slots, a power of two, so the one being written is
+     *             never among them
+     */
+    TransitionRing(int size) {
+        capacity = Math.max(1, size);
+        int slots = Integer.highestOneBit(capacity) << 1;
+        mask = slots - 1;
+        timestamps = new long[slots];
+        durations = new long[slots];
+        fromStates = new Class<?>[slots];
+        toStates = new Class<?>[slots];
+        eventTypes = new Class<?>[slots];
+    }
+
+    int capacity() {
+        return capacity;
+    }
+
+    /**
+     * @return the sequence of the next record, that is the number of records written
+     */
+    long written() {
+        return written;
+    }
+
+    void write(long timestampMillis, long durationNanos, Class<?> from, Class<?> to, Class<?> eventType) {
+        long sequence = written;
+        int slot = (int) sequence & mask;
+        timestamps[slot] = timestampMillis;
+        durations[slot] = durationNanos;
+        fromStates[slot] = from;
+        toStates[slot] = to;
+        eventTypes[slot] = eventType;
+        written = sequence + 1;
+    }
+
+    /**
+     * @return the records from {@code begin} to {@code end}, exclusive, still in the ring once copied, oldest first
+     */
+    List<TransitionRecorder.Entry> read(long begin, long end) {
+        long first = Math.max(begin, end - capacity());
+        List<TransitionRecorder.Entry> answer = newArrayListWithCapacity((int) Math.max(0, end - first));
+        for (long sequence = first; sequence < end; sequence++) {
+            int slot = (int) sequence & mask;
+            answer.add(new TransitionRecorder.Entry(sequence, timestamps[slot], durations[slot], fromStates[slot], toStates[slot], eventTypes[slot]));
+        }
+
+        // Slots the writer may have reused while we were copying, and the one it may be writing now
+        long overwritten = written - mask;
+        int skip = 0;
+        while ((skip < answer.size()) && (answer.get(skip).getSequence() < overwritten)) {
+            skip++;
+        }
+        return skip == 0 ? answer : answer.subList(skip, answer.size());
+    }
+}
@@ -0,0 +1,175 @@
+package jibe.tools.fsm.core;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import jibe.tools.fsm.api.StreamOverflow;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Publishes the transitions of an engine to observers off the dispatching thread. The engine writes compact records
+ * into a {@link TransitionRing}, without locking or allocating; every subscription reads them, in batches, on a thread of
+ * its own, so a slow observer only ever falls behind, as governed by the {@link StreamOverflow} policy.
+ */
+public class TransitionStream {
+    private static final Logger LOGGER = LoggerFactory.getLogger(TransitionStream.class);
+    private static final long IDLE_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final TransitionRing ring;
+    private final StreamOverflow overflow;
+    private final List<Subscription> subscriptions = new CopyOnWriteArrayList<>();
+    private volatile long dropped;
+    private volatile boolean closed;
+    private long gate;
+
+    TransitionStream(int size, StreamOverflow overflow) {
+        ring = new TransitionRing(size);
+        this.overflow = overflow;
+    }
+
+    public int capacity() {
+        return ring.capacity();
+    }
+
+    /**
+     * @return the number of transitions published
+     */
+    public long written() {
+        return ring.written();
+    }
+
+    /**
+     * @return the number of transitions dropped under {@link StreamOverflow#Drop}
+     */
+    public long dropped() {
+        return dropped;
+    }
+
+    public interface Listener {
+        /**
+         * Called on the subscription's thread with the transitions published since the previous batch, oldest first.
+         */
+        void onTransitions(List<TransitionRecorder.Entry> batch);
+    }
+
+    /**
+     * Subscribes on a daemon thread of its own.
+     */
+    public Subscription subscribe(Listener listener) {
+        return subscribe(listener, command -> new ThreadFactoryBuilder()
+                .setNameFormat("transition-stream-%d")
+                .setDaemon(true)
+                .build()
+                .newThread(command)
+                .start());
+    }
+
+    /**
+     * Subscribes from the next transition on, reading on a task occupying a thread of {@code executor} until the
+     * subscription is cancelled or the engine stops.
+     */
+    public Subscription subscribe(Listener listener, Executor executor) {
+        Subscription subscription = new Subscription(listener, ring.written());
+        subscriptions.add(subscription);
+        executor.execute(subscription);
+        return subscription;
+    }
+
+    void publish(long timestampMillis, long durationNanos, Class<?> from, Class<?> to, Class<?> eventType) {
+        long sequence = ring.written();
+        if ((overflow == StreamOverflow.Drop) && (sequence - gate >= capacity())) {
+            gate = slowest(sequence);
+            if (sequence - gate >= capacity()) {
+                dropped++;
+                return;
+            }
+        }
+        ring.write(timestampMillis, durationNanos, from, to, eventType);
+    }
+
+    private long slowest(long sequence) {
+        long answer = sequence;
+        for (Subscription subscription : subscriptions) {
+            answer = Math.min(answer, subscription.cursor);
+        }
+        return answer;
+    }
+
+    /**
+     * Lets every subscription deliver what was published and end.
+     */
+    void close() {
+        closed = true;
+    }
+
+    public final class Subscription implements Runnable {
+        private final Listener listener;
+        private volatile long cursor;
+        private volatile long lost;
+        private volatile boolean cancelled;
+
+        private Subscription(Listener listener, long cursor) {
+            this.listener = listener;
+            this.cursor = cursor;
+        }
+
+        /**
+         * @return the number of transitions published but not yet delivered
+         */
+        public long lag() {
+            return ring.written() - cursor;
+        }
+
+        /**
+         * @return the number of transitions overwritten before they could be delivered
+         */
+        public long lost() {
+            return lost;
+        }
+
+        public void cancel() {
+            cancelled = true;
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (!cancelled) {
+                    long end = ring.written();
+                    if (end == cursor) {
+                        if (closed) {
+                            return;
+                        }
+                        LockSupport.parkNanos(IDLE_NANOS);
+                        continue;
+                    }
+                    deliver(end);
+                }
+            } finally {
+                subscriptions.remove(this);
+            }
+        }
+
+        private void deliver(long end) {
+            List<TransitionRecorder.Entry> batch = ring.read(cursor, end);
+            long first = batch.isEmpty() ? end : batch.get(0).getSequence();
+            if (first > cursor) {
+                lost += first - cursor;
+            }
+            cursor = end;
+            if (!batch.isEmpty()) {
+                try {
+                    listener.onTransitions(Collections.unmodifiableList(batch));
+                } catch (RuntimeException e) {
+                    LOGGER.warn("listener failed", e);
+                }
+            }
+        }
+    }
+}
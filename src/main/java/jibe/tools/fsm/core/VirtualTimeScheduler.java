@@ -0,0 +1,265 @@
+package jibe.tools.fsm.core;
+
+import jibe.tools.fsm.api.Clock;
+
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import static com.google.common.collect.Lists.newArrayList;
+
+/**
+ * {@link ScheduledExecutorService} driven by a virtual clock. Nothing runs on its own: tasks are run on the calling
+ * thread, in deadline order, when the clock is advanced, either manually or by jumping straight to the next deadline.
+ */
+public class VirtualTimeScheduler extends AbstractExecutorService implements ScheduledExecutorService, Clock {
+    private final PriorityQueue<VirtualTask<?>> tasks = new PriorityQueue<>();
+    private long nowNanos;
+    private long sequence;
+    private boolean shutdown;
+
+    public VirtualTimeScheduler() {
+        this(0);
+    }
+
+    public VirtualTimeScheduler(long startMillis) {
+        this.nowNanos = TimeUnit.MILLISECONDS.toNanos(startMillis);
+    }
+
+    @Override
+    public long currentTimeMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(nowNanos);
+    }
+
+    @Override
+    public long nanoTime() {
+        return nowNanos;
+    }
+
+    /**
+     * Runs every task due at or before {@code millis} and leaves the clock at {@code millis}.
+     */
+    public void advanceTo(long millis) {
+        advanceToNanos(TimeUnit.MILLISECONDS.toNanos(millis));
+    }
+
+    public void advanceBy(long duration, TimeUnit timeUnit) {
+        advanceToNanos(nowNanos + timeUnit.toNanos(duration));
+    }
+
+    private void advanceToNanos(long deadline) {
+        VirtualTask<?> task;
+        while (((task = tasks.peek()) != null) && (task.deadline <= deadline)) {
+            tasks.poll();
+            nowNanos = Math.max(nowNanos, task.deadline);
+            task.run();
+        }
+        nowNanos = Math.max(nowNanos, deadline);
+    }
+
+    /**
+     * Moves the clock to the next deadline and runs every task due at that instant.
+     *
+     * @return false if there was nothing scheduled
+     */
+    public boolean runNext() {
+        VirtualTask<?> task = tasks.peek();
+        if (task == null) {
+            return false;
+        }
+        advanceToNanos(task.deadline);
+        return true;
+    }
+
+    /**
+     * Runs as fast as possible, from deadline to deadline, until nothing is scheduled or {@code maxDeadlines} have
+     * been reached. Periodic timers and timeouts re-armed on every state never go idle, hence the bound.
+     *
+     * @return the number of deadlines run
+     */
+    public int runUntilIdle(int maxDeadlines) {
+        int answer = 0;
+        while ((answer < maxDeadlines) && runNext()) {
+            answer++;
+        }
+        return answer;
+    }
+
+    public int pendingTasks() {
+        return tasks.size();
+    }
+
+    @Override
+    public ScheduledFuture<?> schedule(Runnable command, long delay, TimeUnit unit) {
+        return enqueue(new VirtualTask<>(Executors.callable(command), delay(delay, unit), 0));
+    }
+
+    @Override
+    public <V> ScheduledFuture<V> schedule(Callable<V> callable, long delay, TimeUnit unit) {
+        return enqueue(new VirtualTask<>(callable, delay(delay, unit), 0));
+    }
+
+    @Override
+    public ScheduledFuture<?> scheduleAtFixedRate(Runnable command, long initialDelay, long period, TimeUnit unit) {
+        return enqueue(new VirtualTask<>(Executors.callable(command), delay(initialDelay, unit), positive(unit.toNanos(period))));
+    }
+
+    @Override
+    public ScheduledFuture<?> scheduleWithFixedDelay(Runnable command, long initialDelay, long delay, TimeUnit unit) {
+        return scheduleAtFixedRate(command, initialDelay, delay, unit);
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        schedule(command, 0, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public void shutdown() {
+        shutdown = true;
+    }
+
+    @Override
+    public List<Runnable> shutdownNow() {
+        shutdown = true;
+        List<Runnable> answer = newArrayList();
+        for (VirtualTask<?> task : tasks) {
+            answer.add(task);
+        }
+        tasks.clear();
+        return answer;
+    }
+
+    @Override
+    public boolean isShutdown() {
+        return shutdown;
+    }
+
+    @Override
+    public boolean isTerminated() {
+        return shutdown;
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit) {
+        return shutdown;
+    }
+
+    private <V> VirtualTask<V> enqueue(VirtualTask<V> task) {
+        if (shutdown) {
+            throw new IllegalStateException("scheduler is shutdown");
+        }
+        tasks.add(task);
+        return task;
+    }
+
+    private long delay(long delay, TimeUnit unit) {
+        return nowNanos + Math.max(0, unit.toNanos(delay));
+    }
+
+    private long positive(long period) {
+        if (period > 0) {
+            return period;
+        }
+        throw new IllegalArgumentException("period must be a positive number > 0");
+    }
+
+    private class VirtualTask<V> implements ScheduledFuture<V>, Runnable {
+        private final Callable<V> callable;
+        private final long period;
+        private final long order = sequence++;
+        private long deadline;
+        private boolean cancelled;
+        private boolean done;
+        private V result;
+        private Exception failure;
+
+        private VirtualTask(Callable<V> callable, long deadline, long period) {
+            this.callable = callable;
+            this.deadline = deadline;
+            this.period = period;
+        }
+
+        @Override
+        public void run() {
+            if (cancelled) {
+                return;
+            }
+            try {
+                result = callable.call();
+            } catch (Exception e) {
+                failure = e;
+                done = true;
+                return;
+            }
+            if (period > 0 && !shutdown) {
+                deadline += period;
+                tasks.add(this);
+            } else {
+                done = true;
+            }
+        }
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(deadline - nowNanos, TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed o) {
+            if (o instanceof VirtualTask) {
+                VirtualTask<?> other = (VirtualTask<?>) o;
+                int answer = Long.compare(deadline, other.deadline);
+                return answer != 0 ? answer : Long.compare(order, other.order);
+            }
+            return Long.compare(getDelay(TimeUnit.NANOSECONDS), o.getDelay(TimeUnit.NANOSECONDS));
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            if (done || cancelled) {
+                return false;
+            }
+            cancelled = true;
+            tasks.remove(this);
+            return true;
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return cancelled;
+        }
+
+        @Override
+        public boolean isDone() {
+            return done || cancelled;
+        }
+
+        @Override
+        public V get() throws ExecutionException {
+            if (cancelled) {
+                throw new CancellationException();
+            }
+            if (!done) {
+                throw new IllegalStateException("task not due until the clock is advanced");
+            }
+            if (failure != null) {
+                throw new ExecutionException(failure);
+            }
+            return result;
+        }
+
+        @Override
+        public V get(long timeout, TimeUnit unit) throws ExecutionException {
+            return get();
+        }
+    }
+}
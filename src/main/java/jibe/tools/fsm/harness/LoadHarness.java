@@ -0,0 +1,308 @@
+package jibe.tools.fsm.harness;
+
+import com.google.common.base.Throwables;
+import jibe.tools.fsm.annotations.TimerEvent;
+import jibe.tools.fsm.api.Engine;
+import jibe.tools.fsm.core.DefaultEngine;
+import jibe.tools.fsm.core.EngineFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.lang.reflect.Constructor;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
+
+import static com.google.common.collect.Lists.newArrayList;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Soak-test harness: drives a number of engines of one fsm with a weighted mix of events, arriving as a Poisson
+ * process at a fixed rate, and reports throughput, latency percentiles, queue depth over time, GC and threads.
+ * <p>
+ * The load is open-loop: events are sent when they are due, whether or not the engines keep up, and latency is
+ * measured from when an event was due rather than when it could actually be sent, so a stalled engine shows up in
+ * the percentiles instead of slowing the generator down (coordinated omission).
+ * <pre>
+ * java -cp ... jibe.tools.fsm.harness.LoadHarness &lt;fsm class&gt; &lt;events/s&gt; &lt;seconds&gt; &lt;engines&gt; &lt;event[:weight]&gt;...
+ * </pre>
+ * where an event is a string, or {@code enum.Class#CONSTANT}.
+ * <p>
+ * Events sent are matched to those dispatched by their order, engines dispatching in the order they queue; so the fsm
+ * is not to send events to its own engine, but for its {@link TimerEvent timer events}, which are not measured.
+ */
+public class LoadHarness {
+    private static final Logger LOGGER = LoggerFactory.getLogger(LoadHarness.class);
+
+    private final Supplier<?> fsmFactory;
+    private final List<Object> events = newArrayList();
+    private final List<Double> weights = newArrayList();
+    private Supplier<DefaultEngine.ConfigurationBuilder> configuration = DefaultEngine::configurationBuilder;
+    private int engines = 1;
+    private double rate = 1000;
+    private long durationNanos = TimeUnit.SECONDS.toNanos(10);
+    private long sampleNanos = TimeUnit.SECONDS.toNanos(1);
+
+    public LoadHarness(Supplier<?> fsmFactory) {
+        this.fsmFactory = requireNonNull(fsmFactory);
+    }
+
+    public LoadHarness event(Object event, double weight) {
+        if (weight <= 0) {
+            throw new IllegalArgumentException("weight must be positive");
+        }
+        if (isTimerEvent(event)) {
+            throw new IllegalArgumentException("timer events are sent by the fsm itself: " + event);
+        }
+        events.add(requireNonNull(event));
+        weights.add(weight);
+        return this;
+    }
+
+    /**
+     * Configuration of every engine; a new builder is needed for each, as each gets its own executors.
+     */
+    public LoadHarness configuration(Supplier<DefaultEngine.ConfigurationBuilder> configuration) {
+        this.configuration = requireNonNull(configuration);
+        return this;
+    }
+
+    public LoadHarness engines(int engines) {
+        this.engines = engines;
+        return this;
+    }
+
+    /**
+     * @param eventsPerSecond mean arrival rate over all engines
+     */
+    public LoadHarness rate(double eventsPerSecond) {
+        this.rate = eventsPerSecond;
+        return this;
+    }
+
+    public LoadHarness duration(long duration, TimeUnit timeUnit) {
+        this.durationNanos = timeUnit.toNanos(duration);
+        return this;
+    }
+
+    public LoadHarness sampleEvery(long period, TimeUnit timeUnit) {
+        this.sampleNanos = timeUnit.toNanos(period);
+        return this;
+    }
+
+    public LoadReport run() {
+        if (events.isEmpty()) {
+            throw new IllegalStateException("no events to send");
+        }
+        double[] cumulative = new double[weights.size()];
+        double sum = 0;
+        for (int i = 0; i < cumulative.length; i++) {
+            sum += weights.get(i);
+            cumulative[i] = sum;
+        }
+
+        LatencyHistogram latencies = new LatencyHistogram();
+        Target[] targets = new Target[engines];
+        String fsmName = null;
+        for (int i = 0; i < engines; i++) {
+            Object fsm = fsmFactory.get();
+            fsmName = fsm.getClass().getName();
+            targets[i] = new Target(latencies);
+            Engine<Object, Object> engine = EngineFactory.newInstance().newEngine(fsm, configuration.get()
+                    .dispatchListener(targets[i]::dispatched));
+            targets[i].engine = (DefaultEngine<?, Object>) engine;
+            engine.start();
+        }
+
+        ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+        threadBean.resetPeakThreadCount();
+        long[] gcBefore = gc();
+        List<long[]> queueDepths = newArrayList();
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long sent = 0;
+        long rejected = 0;
+
+        long start = System.nanoTime();
+        long end = start + durationNanos;
+        long nextSample = start + sampleNanos;
+        double due = start;
+        while (true) {
+            long now = System.nanoTime();
+            if (now >= nextSample) {
+                queueDepths.add(new long[]{TimeUnit.NANOSECONDS.toMillis(now - start), queueDepth(targets)});
+                nextSample += sampleNanos;
+            }
+            if ((long) due > now) {
+                LockSupport.parkNanos(Math.min((long) due, nextSample) - now);
+                continue;
+            }
+            if ((long) due >= end) {
+                break;
+            }
+            // everything due by now goes out, each stamped with when it was due
+            Target target = targets[random.nextInt(engines)];
+            Object event = events.get(pick(cumulative, random.nextDouble() * sum));
+            if (!target.send(event, (long) due)) {
+                rejected++;
+            }
+            sent++;
+            due += -Math.log(1 - random.nextDouble()) / rate * 1e9;
+        }
+
+        awaitDrained(targets, TimeUnit.SECONDS.toNanos(5));
+        long elapsed = System.nanoTime() - start;
+        long[] gcAfter = gc();
+        int threads = threadBean.getThreadCount();
+        int peakThreads = threadBean.getPeakThreadCount();
+        for (Target target : targets) {
+            target.engine.stop();
+        }
+        LoadReport report = new LoadReport(fsmName, engines, rate, elapsed, sent, rejected, latencies, queueDepths,
+                gcAfter[0] - gcBefore[0], gcAfter[1] - gcBefore[1], threads, peakThreads);
+        LOGGER.info("load run done:\n{}", report);
+        return report;
+    }
+
+    private static boolean isTimerEvent(Object event) {
+        return event.getClass().isAnnotationPresent(TimerEvent.class);
+    }
+
+    private static int pick(double[] cumulative, double value) {
+        for (int i = 0; i < cumulative.length - 1; i++) {
+            if (value < cumulative[i]) {
+                return i;
+            }
+        }
+        return cumulative.length - 1;
+    }
+
+    private static long queueDepth(Target[] targets) {
+        long answer = 0;
+        for (Target target : targets) {
+            answer += target.engine.getQueueDepth();
+        }
+        return answer;
+    }
+
+    private static void awaitDrained(Target[] targets, long timeoutNanos) {
+        long deadline = System.nanoTime() + timeoutNanos;
+        for (Target target : targets) {
+            while (!target.inFlight.isEmpty() && (System.nanoTime() < deadline)) {
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+            }
+        }
+    }
+
+    private static long[] gc() {
+        long count = 0;
+        long millis = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            count += Math.max(0, gc.getCollectionCount());
+            millis += Math.max(0, gc.getCollectionTime());
+        }
+        return new long[]{count, millis};
+    }
+
+    /**
+     * One engine, and the events sent to it that have yet to be dispatched, in order.
+     */
+    private static final class Target {
+        private final LatencyHistogram latencies;
+        private final Queue<Sent> inFlight = new ConcurrentLinkedQueue<>();
+        private DefaultEngine<?, Object> engine;
+
+        private Target(LatencyHistogram latencies) {
+            this.latencies = latencies;
+        }
+
+        /**
+         * @return false if the engine refused the event, its queue full, or filtered it
+         */
+        private boolean send(Object event, long dueNanos) {
+            // queued before it is sent, for the engine may dispatch it straight away; only this thread sends, so a
+            // refused event is the last one
+            Sent sent = new Sent(dueNanos);
+            inFlight.add(sent);
+            boolean answer;
+            try {
+                answer = engine.tryEvent(event);
+            } catch (IllegalStateException e) {
+                answer = false;
+            }
+            if (!answer) {
+                inFlight.remove(sent);
+            }
+            return answer;
+        }
+
+        private void dispatched(Object event) {
+            long now = System.nanoTime();
+            // events sent by the fsm's own timers are not ours; ours are dispatched in the order they were sent
+            if (isTimerEvent(event)) {
+                return;
+            }
+            Sent head = inFlight.poll();
+            if (head != null) {
+                latencies.record(now - head.dueNanos);
+            }
+        }
+    }
+
+    private static final class Sent {
+        private final long dueNanos;
+
+        private Sent(long dueNanos) {
+            this.dueNanos = dueNanos;
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 5) {
+            System.err.println("usage: LoadHarness <fsm class> <events/s> <seconds> <engines> <event[:weight]>...");
+            System.exit(1);
+        }
+        Class<?> fsmClass = Class.forName(args[0]);
+        Constructor<?> constructor = fsmClass.getDeclaredConstructor();
+        constructor.setAccessible(true);
+        LoadHarness harness = new LoadHarness(() -> {
+            try {
+                return constructor.newInstance();
+            } catch (Exception e) {
+                throw Throwables.propagate(e);
+            }
+        })
+                .rate(Double.parseDouble(args[1]))
+                .duration(Long.parseLong(args[2]), TimeUnit.SECONDS)
+                .engines(Integer.parseInt(args[3]));
+        for (int i = 4; i < args.length; i++) {
+            String spec = args[i];
+            double weight = 1;
+            int colon = spec.lastIndexOf(':');
+            if (colon > 0) {
+                weight = Double.parseDouble(spec.substring(colon + 1));
+                spec = spec.substring(0, colon);
+            }
+            harness.event(parseEvent(spec), weight);
+        }
+        LoadReport report = harness.run();
+        System.out.print(report);
+        System.out.println(report.toJson());
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static Object parseEvent(String spec) throws ClassNotFoundException {
+        int hash = spec.indexOf('#');
+        if (hash < 0) {
+            return spec;
+        }
+        Class enumClass = Class.forName(spec.substring(0, hash));
+        return Enum.valueOf(enumClass, spec.substring(hash + 1));
+    }
+}
@@ -0,0 +1,136 @@
+package jibe.tools.fsm.harness;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Outcome of a {@link LoadHarness} run.
+ */
+public class LoadReport {
+    private final String fsm;
+    private final int engines;
+    private final double rate;
+    private final long elapsedNanos;
+    private final long sent;
+    private final long rejected;
+    private final LatencyHistogram latencies;
+    private final List<long[]> queueDepths;
+    private final long gcCount;
+    private final long gcMillis;
+    private final int threads;
+    private final int peakThreads;
+
+    LoadReport(String fsm, int engines, double rate, long elapsedNanos, long sent, long rejected, LatencyHistogram latencies,
+               List<long[]> queueDepths, long gcCount, long gcMillis, int threads, int peakThreads) {
+        this.fsm = fsm;
+        this.engines = engines;
+        this.rate = rate;
+        this.elapsedNanos = elapsedNanos;
+        this.sent = sent;
+        this.rejected = rejected;
+        this.latencies = latencies;
+        this.queueDepths = Collections.unmodifiableList(queueDepths);
+        this.gcCount = gcCount;
+        this.gcMillis = gcMillis;
+        this.threads = threads;
+        this.peakThreads = peakThreads;
+    }
+
+    public long getSent() {
+        return sent;
+    }
+
+    /**
+     * @return events refused because the queue of their engine was full
+     */
+    public long getRejected() {
+        return rejected;
+    }
+
+    public long getDispatched() {
+        return latencies.count();
+    }
+
+    /**
+     * @return events dispatched per second
+     */
+    public double getThroughput() {
+        return elapsedNanos == 0 ? 0 : latencies.count() * 1e9 / elapsedNanos;
+    }
+
+    /**
+     * @return nanos from the moment an event was due to be sent until it had been dispatched
+     */
+    public long getLatency(double percentile) {
+        return latencies.percentile(percentile);
+    }
+
+    public long getMaxLatency() {
+        return latencies.max();
+    }
+
+    /**
+     * @return {@code [millis since start, total queue depth]} samples
+     */
+    public List<long[]> getQueueDepths() {
+        return queueDepths;
+    }
+
+    public long getGcMillis() {
+        return gcMillis;
+    }
+
+    public int getPeakThreads() {
+        return peakThreads;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder answer = new StringBuilder();
+        answer.append(String.format(Locale.ROOT, "fsm: %s, engines: %d, rate: %.0f/s, elapsed: %.1fs%n",
+                fsm, engines, rate, elapsedNanos / 1e9));
+        answer.append(String.format(Locale.ROOT, "sent: %d, dispatched: %d, rejected: %d, throughput: %.0f/s%n",
+                sent, getDispatched(), rejected, getThroughput()));
+        answer.append(String.format(Locale.ROOT, "latency us: p50 %.1f, p99 %.1f, p99.9 %.1f, max %.1f%n",
+                micros(getLatency(50)), micros(getLatency(99)), micros(getLatency(99.9)), micros(getMaxLatency())));
+        answer.append(String.format(Locale.ROOT, "gc: %d collections, %d ms; threads: %d, peak %d%n",
+                gcCount, gcMillis, threads, peakThreads));
+        answer.append("queue depth:");
+        for (long[] sample : queueDepths) {
+            answer.append(' ').append(sample[0]).append("ms=").append(sample[1]);
+        }
+        return answer.append('\n').toString();
+    }
+
+    public String toJson() {
+        StringBuilder answer = new StringBuilder("{");
+        answer.append("\"fsm\":\"").append(fsm.replace("\\", "\\\\").replace("\"", "\\\"")).append('"');
+        answer.append(",\"engines\":").append(engines);
+        answer.append(",\"rate\":").append(rate);
+        answer.append(",\"elapsedMillis\":").append(TimeUnit.NANOSECONDS.toMillis(elapsedNanos));
+        answer.append(",\"sent\":").append(sent);
+        answer.append(",\"dispatched\":").append(getDispatched());
+        answer.append(",\"rejected\":").append(rejected);
+        answer.append(",\"throughput\":").append(String.format(Locale.ROOT, "%.1f", getThroughput()));
+        answer.append(",\"latencyNanos\":{\"p50\":").append(getLatency(50))
+                .append(",\"p99\":").append(getLatency(99))
+                .append(",\"p99.9\":").append(getLatency(99.9))
+                .append(",\"max\":").append(getMaxLatency()).append('}');
+        answer.append(",\"gc\":{\"count\":").append(gcCount).append(",\"millis\":").append(gcMillis).append('}');
+        answer.append(",\"threads\":{\"live\":").append(threads).append(",\"peak\":").append(peakThreads).append('}');
+        answer.append(",\"queueDepth\":[");
+        for (int i = 0; i < queueDepths.size(); i++) {
+            if (i > 0) {
+                answer.append(',');
+            }
+            answer.append('[').append(queueDepths.get(i)[0]).append(',').append(queueDepths.get(i)[1]).append(']');
+        }
+        return answer.append("]}").toString();
+    }
+
+    private static double micros(long nanos) {
+        return nanos / 1e3;
+    }
+}
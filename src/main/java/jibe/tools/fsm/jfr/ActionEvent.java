@@ -0,0 +1,52 @@
+package jibe.tools.fsm.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Execution of an {@code @Action} method.
+ */
+@Name("jibe.fsm.Action")
+@Label("FSM Action")
+@Description("Execution of an @Action method.")
+@Category({ "Jibe", "FSM" })
+@Enabled(false)
+@StackTrace(false)
+public class ActionEvent extends Event {
+    private static final ActionEvent PROBE = new ActionEvent();
+
+    @Label("FSM")
+    private String fsm;
+
+    @Label("State")
+    private String state;
+
+    @Label("Action")
+    private String action;
+
+    @Label("Action Type")
+    private String actionType;
+
+    /**
+     * Cheap check, without allocating, of whether the event is enabled in any running recording.
+     */
+    public static boolean enabled() {
+        return PROBE.isEnabled();
+    }
+
+    public void commit(String fsm, String state, String action, String actionType) {
+        end();
+        if (shouldCommit()) {
+            this.fsm = fsm;
+            this.state = state;
+            this.action = action;
+            this.actionType = actionType;
+            commit();
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package jibe.tools.fsm.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * An engine starting up or shutting down.
+ */
+@Name("jibe.fsm.Engine")
+@Label("FSM Engine")
+@Description("An engine starting up or shutting down.")
+@Category({ "Jibe", "FSM" })
+@Enabled(false)
+@StackTrace(false)
+public class EngineEvent extends Event {
+    private static final EngineEvent PROBE = new EngineEvent();
+
+    @Label("FSM")
+    private String fsm;
+
+    @Label("Phase")
+    private String phase;
+
+    /**
+     * Cheap check, without allocating, of whether the event is enabled in any running recording.
+     */
+    public static boolean enabled() {
+        return PROBE.isEnabled();
+    }
+
+    public void commit(String fsm, String phase) {
+        end();
+        if (shouldCommit()) {
+            this.fsm = fsm;
+            this.phase = phase;
+            commit();
+        }
+    }
+}
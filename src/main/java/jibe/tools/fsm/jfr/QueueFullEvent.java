@@ -0,0 +1,52 @@
+package jibe.tools.fsm.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * An event rejected because the engine queue was full.
+ */
+@Name("jibe.fsm.QueueFull")
+@Label("FSM Queue Full")
+@Description("An event rejected because the engine queue was full.")
+@Category({ "Jibe", "FSM" })
+@Enabled(false)
+@StackTrace(false)
+public class QueueFullEvent extends Event {
+    private static final QueueFullEvent PROBE = new QueueFullEvent();
+
+    @Label("FSM")
+    private String fsm;
+
+    @Label("State")
+    private String state;
+
+    @Label("Event Type")
+    private String eventType;
+
+    @Label("Queue Size")
+    private int queueSize;
+
+    /**
+     * Cheap check, without allocating, of whether the event is enabled in any running recording.
+     */
+    public static boolean enabled() {
+        return PROBE.isEnabled();
+    }
+
+    public void commit(String fsm, String state, String eventType, int queueSize) {
+        end();
+        if (shouldCommit()) {
+            this.fsm = fsm;
+            this.state = state;
+            this.eventType = eventType;
+            this.queueSize = queueSize;
+            commit();
+        }
+    }
+}
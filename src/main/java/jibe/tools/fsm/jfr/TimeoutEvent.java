@@ -0,0 +1,48 @@
+package jibe.tools.fsm.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A {@code @TransitionOnTimeout} firing in its state.
+ */
+@Name("jibe.fsm.Timeout")
+@Label("FSM Timeout")
+@Description("A @TransitionOnTimeout firing in its state.")
+@Category({ "Jibe", "FSM" })
+@Enabled(false)
+@StackTrace(false)
+public class TimeoutEvent extends Event {
+    private static final TimeoutEvent PROBE = new TimeoutEvent();
+
+    @Label("FSM")
+    private String fsm;
+
+    @Label("State")
+    private String state;
+
+    @Label("Timeout")
+    private String timeout;
+
+    /**
+     * Cheap check, without allocating, of whether the event is enabled in any running recording.
+     */
+    public static boolean enabled() {
+        return PROBE.isEnabled();
+    }
+
+    public void commit(String fsm, String state, String timeout) {
+        end();
+        if (shouldCommit()) {
+            this.fsm = fsm;
+            this.state = state;
+            this.timeout = timeout;
+            commit();
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package jibe.tools.fsm.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A transition of a state machine, from the event being taken until the entered state's actions have run.
+ */
+@Name("jibe.fsm.Transition")
+@Label("FSM Transition")
+@Description("A transition of a state machine, from the event being taken until the entered state's actions have run.")
+@Category({ "Jibe", "FSM" })
+@Enabled(false)
+@StackTrace(false)
+public class TransitionEvent extends Event {
+    private static final TransitionEvent PROBE = new TransitionEvent();
+
+    @Label("FSM")
+    private String fsm;
+
+    @Label("From State")
+    private String fromState;
+
+    @Label("To State")
+    private String toState;
+
+    @Label("Event Type")
+    private String eventType;
+
+    /**
+     * Cheap check, without allocating, of whether the event is enabled in any running recording.
+     */
+    public static boolean enabled() {
+        return PROBE.isEnabled();
+    }
+
+    public void commit(String fsm, String fromState, String toState, String eventType) {
+        end();
+        if (shouldCommit()) {
+            this.fsm = fsm;
+            this.fromState = fromState;
+            this.toState = toState;
+            this.eventType = eventType;
+            commit();
+        }
+    }
+}
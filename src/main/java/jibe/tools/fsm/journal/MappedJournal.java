@@ -0,0 +1,277 @@
+package jibe.tools.fsm.journal;
+
+import com.google.common.base.Throwables;
+import jibe.tools.fsm.api.EventCodec;
+import jibe.tools.fsm.api.Journal;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.CRC32;
+
+import static com.google.common.collect.Lists.newArrayList;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * {@link Journal} backed by a directory of fixed-size, memory-mapped segment files.
+ * <p>
+ * Record layout: {@code [int length][int crc][long sequence][byte type][payload]}, where length counts the type byte
+ * and the payload. A zero length or a crc mismatch marks the end of the valid data in a segment. A record marking the
+ * failure or the expiry of an event carries the sequence of that event and no payload.
+ */
+public class MappedJournal<E> implements Journal<E> {
+    private static final Logger LOGGER = LoggerFactory.getLogger(MappedJournal.class);
+
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final String SNAPSHOT = "snapshot";
+    private static final int HEADER_SIZE = 4 + 4 + 8;
+    private static final byte EVENT = 1;
+    private static final byte TIMEOUT = 2;
+    private static final byte FAILED = 3;
+    private static final byte EXPIRED = 4;
+    private static final byte[] NO_PAYLOAD = new byte[0];
+
+    private final File directory;
+    private final EventCodec<E> codec;
+    private final int segmentSize;
+    private final int syncEvery;
+    private final int snapshotEvery;
+    private final CRC32 crc = new CRC32();
+
+    private RandomAccessFile segmentFile;
+    private MappedByteBuffer segment;
+    private long sequence;
+    private int unsynced;
+    private long lastSnapshot;
+    private boolean recovered;
+
+    public MappedJournal(File directory, EventCodec<E> codec) {
+        this(directory, codec, 16 * 1024 * 1024, 64, 10000);
+    }
+
+    /**
+     * @param segmentSize   size in bytes of each mapped segment file
+     * @param syncEvery     number of appends between each fsync of the active segment
+     * @param snapshotEvery number of processed events between each snapshot and compaction
+     */
+    public MappedJournal(File directory, EventCodec<E> codec, int segmentSize, int syncEvery, int snapshotEvery) {
+        this.directory = requireNonNull(directory);
+        this.codec = requireNonNull(codec);
+        this.segmentSize = segmentSize;
+        this.syncEvery = Math.max(1, syncEvery);
+        this.snapshotEvery = Math.max(1, snapshotEvery);
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new RuntimeException("unable to create journal directory: " + directory);
+        }
+    }
+
+    @Override
+    public synchronized void recover(Replayer<E> replayer) {
+        if (recovered) {
+            throw new IllegalStateException("already recovered....");
+        }
+        try {
+            long snapshotSequence = 0;
+            File snapshotFile = new File(directory, SNAPSHOT);
+            if (snapshotFile.exists()) {
+                String[] snapshot = new String(Files.readAllBytes(snapshotFile.toPath()), StandardCharsets.UTF_8).split("\n");
+                snapshotSequence = Long.parseLong(snapshot[0]);
+                replayer.snapshot(snapshotSequence, snapshot[1]);
+            }
+            lastSnapshot = snapshotSequence;
+            sequence = snapshotSequence;
+
+            for (File file : segments()) {
+                sequence = Math.max(sequence, replay(file, snapshotSequence, replayer));
+            }
+            LOGGER.info("recovered journal: " + directory + " at sequence: " + sequence);
+            openSegment(sequence + 1);
+            recovered = true;
+        } catch (IOException e) {
+            throw Throwables.propagate(e);
+        }
+    }
+
+    @Override
+    public synchronized long append(E event) {
+        return append(EVENT, codec.encode(event));
+    }
+
+    @Override
+    public synchronized long appendTimeout(String timeout) {
+        return append(TIMEOUT, timeout.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Override
+    public synchronized void appendFailed(long sequence) {
+        append(FAILED, sequence, NO_PAYLOAD);
+    }
+
+    @Override
+    public synchronized void appendExpired(long sequence) {
+        append(EXPIRED, sequence, NO_PAYLOAD);
+    }
+
+    @Override
+    public synchronized void processed(long sequence, String currentState) {
+        if (sequence - lastSnapshot < snapshotEvery) {
+            return;
+        }
+        try {
+            sync();
+            File tmp = new File(directory, SNAPSHOT + ".tmp");
+            Files.write(tmp.toPath(), (sequence + "\n" + currentState).getBytes(StandardCharsets.UTF_8));
+            Files.move(tmp.toPath(), new File(directory, SNAPSHOT).toPath(), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+            lastSnapshot = sequence;
+            compact(sequence);
+        } catch (IOException e) {
+            throw Throwables.propagate(e);
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        if (segment == null) {
+            return;
+        }
+        try {
+            sync();
+            segmentFile.close();
+        } catch (IOException e) {
+            throw Throwables.propagate(e);
+        } finally {
+            segment = null;
+        }
+    }
+
+    private long append(byte type, byte[] payload) {
+        long next = sequence + 1;
+        append(type, next, payload);
+        sequence = next;
+        return next;
+    }
+
+    private void append(byte type, long recordSequence, byte[] payload) {
+        if (!recovered) {
+            throw new IllegalStateException("journal must be recovered before appending");
+        }
+        int recordSize = HEADER_SIZE + 1 + payload.length;
+        if (recordSize > segmentSize) {
+            throw new IllegalArgumentException("event of: " + payload.length + " bytes does not fit in a segment");
+        }
+        if (segment.remaining() < recordSize) {
+            roll();
+        }
+        crc.reset();
+        crc.update(type);
+        crc.update(payload, 0, payload.length);
+        segment.putInt(payload.length + 1);
+        segment.putInt((int) crc.getValue());
+        segment.putLong(recordSequence);
+        segment.put(type);
+        segment.put(payload);
+        if (++unsynced >= syncEvery) {
+            sync();
+        }
+    }
+
+    private void sync() {
+        if (unsynced > 0) {
+            segment.force();
+            unsynced = 0;
+        }
+    }
+
+    private void roll() {
+        try {
+            sync();
+            segmentFile.close();
+            openSegment(sequence + 1);
+        } catch (IOException e) {
+            throw Throwables.propagate(e);
+        }
+    }
+
+    private void openSegment(long firstSequence) throws IOException {
+        File file = new File(directory, String.format("%s%020d%s", SEGMENT_PREFIX, firstSequence, SEGMENT_SUFFIX));
+        segmentFile = new RandomAccessFile(file, "rw");
+        segment = segmentFile.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+    }
+
+    private long replay(File file, long after, Replayer<E> replayer) throws IOException {
+        long last = 0;
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            MappedByteBuffer buffer = raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, raf.length());
+            while (buffer.remaining() >= HEADER_SIZE) {
+                int length = buffer.getInt();
+                int checksum = buffer.getInt();
+                long recordSequence = buffer.getLong();
+                if (length <= 0 || length > buffer.remaining()) {
+                    break;
+                }
+                byte type = buffer.get();
+                byte[] payload = new byte[length - 1];
+                buffer.get(payload);
+                crc.reset();
+                crc.update(type);
+                crc.update(payload, 0, payload.length);
+                if ((int) crc.getValue() != checksum) {
+                    LOGGER.warn("torn record at sequence: " + recordSequence + " in: " + file);
+                    break;
+                }
+                // a failure or expiry is recorded after the event it refers to, and possibly after later ones
+                last = Math.max(last, recordSequence);
+                if (recordSequence <= after) {
+                    continue;
+                }
+                if (type == EVENT) {
+                    replayer.event(recordSequence, codec.decode(payload));
+                } else if (type == FAILED) {
+                    replayer.failed(recordSequence);
+                } else if (type == EXPIRED) {
+                    replayer.expired(recordSequence);
+                } else {
+                    replayer.timeout(recordSequence, new String(payload, StandardCharsets.UTF_8));
+                }
+            }
+        }
+        return last;
+    }
+
+    private void compact(long upTo) {
+        List<File> segments = segments();
+        for (int i = 0; i < segments.size() - 1; i++) {
+            if (firstSequence(segments.get(i + 1)) - 1 <= upTo) {
+                LOGGER.debug("compacting segment: " + segments.get(i));
+                if (!segments.get(i).delete()) {
+                    LOGGER.warn("unable to delete segment: " + segments.get(i));
+                }
+            }
+        }
+    }
+
+    private List<File> segments() {
+        File[] files = directory.listFiles((dir, name) -> name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX));
+        if (files == null) {
+            return newArrayList();
+        }
+        Arrays.sort(files);
+        return newArrayList(files);
+    }
+
+    private long firstSequence(File segment) {
+        String name = segment.getName();
+        return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+    }
+}
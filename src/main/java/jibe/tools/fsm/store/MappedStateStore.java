@@ -0,0 +1,348 @@
+package jibe.tools.fsm.store;
+
+import com.google.common.base.Throwables;
+import jibe.tools.fsm.api.StateStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.function.LongConsumer;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * {@link StateStore} in a memory-mapped file, so millions of entities cost no heap and the store survives a restart
+ * of the process as it is: reopening the file is all the recovery there is.
+ * <p>
+ * The file is a header followed by a power-of-two table of fixed-size slots, open-addressed with linear probing and
+ * backward-shift deletion. Slot layout: {@code [long key][int state + 1][int previous][long deadline][int timeout]
+ * [int bucket][long next][long prev]}, where a zero state marks a free slot. Large tables are mapped in several
+ * segments.
+ * <p>
+ * Pending deadlines are indexed by a hashed timing wheel kept in the file too: the header holds the heads of
+ * {@value #WHEEL_SIZE} buckets of {@value #TICK_MILLIS} ms, and every slot with a deadline is linked, by slot number
+ * plus one, into the list of the bucket of its tick. {@link #expired} walks only the buckets of the ticks since the
+ * last sweep, so it costs the deadlines due, and those a whole revolution of the wheel later, not the table.
+ */
+public class MappedStateStore implements StateStore {
+    private static final Logger LOGGER = LoggerFactory.getLogger(MappedStateStore.class);
+
+    private static final long MAGIC = 0x6a6962652d667332L;
+    private static final int SLOT_SIZE = 48;
+    private static final int SEGMENT_SHIFT = 25;
+    private static final int KEY = 0;
+    private static final int STATE = 8;
+    private static final int PREVIOUS = 12;
+    private static final int DEADLINE = 16;
+    private static final int TIMEOUT = 24;
+    private static final int BUCKET = 28;
+    private static final int NEXT = 32;
+    private static final int PREV = 40;
+    private static final int HEADER_CAPACITY = 8;
+    private static final int HEADER_SIZE = 16;
+    private static final int HEADER_FINGERPRINT = 24;
+    private static final int HEADER_SWEPT = 32;
+    private static final int HEADER_WHEEL = 64;
+    private static final int WHEEL_SIZE = 4096;
+    private static final long TICK_MILLIS = 100;
+    private static final int HEADER_SLOTS = (HEADER_WHEEL + (WHEEL_SIZE * 8) + SLOT_SIZE - 1) / SLOT_SIZE;
+
+    private final File file;
+    private final RandomAccessFile raf;
+    private final MappedByteBuffer[] segments;
+    private final long mask;
+    private final long capacity;
+    private int size;
+
+    /**
+     * Opens {@code file}, or creates it with room for {@code capacity} slots rounded up to a power of two. Keep the
+     * load below about 70% of the capacity; the table does not grow.
+     */
+    public MappedStateStore(File file, long capacity) {
+        this.file = requireNonNull(file);
+        try {
+            boolean exists = file.exists() && (file.length() > 0);
+            raf = new RandomAccessFile(file, "rw");
+            long slots = exists ? readCapacity(raf) : Long.highestOneBit(Math.max(2, capacity - 1)) << 1;
+            this.capacity = slots;
+            this.mask = slots - 1;
+            long bytes = (slots + HEADER_SLOTS) * SLOT_SIZE;
+            raf.setLength(bytes);
+
+            long segmentBytes = (long) SLOT_SIZE << SEGMENT_SHIFT;
+            segments = new MappedByteBuffer[(int) ((bytes + segmentBytes - 1) / segmentBytes)];
+            for (int i = 0; i < segments.length; i++) {
+                long position = i * segmentBytes;
+                segments[i] = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, position, Math.min(segmentBytes, bytes - position));
+            }
+            if (exists) {
+                size = segments[0].getInt(HEADER_SIZE);
+                LOGGER.info("opened state store: " + file + " with: " + size + " entities");
+            } else {
+                segments[0].putLong(0, MAGIC);
+                segments[0].putLong(HEADER_CAPACITY, slots);
+            }
+        } catch (IOException e) {
+            throw Throwables.propagate(e);
+        }
+    }
+
+    private static long readCapacity(RandomAccessFile raf) throws IOException {
+        raf.seek(0);
+        if (raf.readLong() != MAGIC) {
+            throw new IllegalStateException("not a state store");
+        }
+        return raf.readLong();
+    }
+
+    public long capacity() {
+        return capacity;
+    }
+
+    @Override
+    public int state(long key) {
+        long slot = find(key);
+        return slot < 0 ? NONE : getInt(slot, STATE) - 1;
+    }
+
+    @Override
+    public int previous(long key) {
+        long slot = find(key);
+        return slot < 0 ? NONE : getInt(slot, PREVIOUS);
+    }
+
+    @Override
+    public long deadline(long key) {
+        long slot = find(key);
+        return slot < 0 ? 0 : getLong(slot, DEADLINE);
+    }
+
+    @Override
+    public int timeout(long key) {
+        long slot = find(key);
+        return slot < 0 ? NONE : getInt(slot, TIMEOUT);
+    }
+
+    @Override
+    public void put(long key, int state, int previous, long deadline, int timeout) {
+        long slot = hash(key);
+        while (true) {
+            if (getInt(slot, STATE) == 0) {
+                if (size + 1 >= capacity) {
+                    throw new IllegalStateException("state store full: " + file);
+                }
+                putLong(slot, KEY, key);
+                putLong(slot, DEADLINE, 0);
+                size++;
+                segments[0].putInt(HEADER_SIZE, size);
+                break;
+            }
+            if (getLong(slot, KEY) == key) {
+                break;
+            }
+            slot = (slot + 1) & mask;
+        }
+        if (getLong(slot, DEADLINE) != 0) {
+            unlink(slot);
+        }
+        if (deadline != 0) {
+            link(slot, deadline);
+        }
+        putInt(slot, PREVIOUS, previous);
+        putLong(slot, DEADLINE, deadline);
+        putInt(slot, TIMEOUT, timeout);
+        putInt(slot, STATE, state + 1);
+    }
+
+    @Override
+    public boolean remove(long key) {
+        long slot = find(key);
+        if (slot < 0) {
+            return false;
+        }
+        if (getLong(slot, DEADLINE) != 0) {
+            unlink(slot);
+        }
+        // backward-shift: move later entries of the probe sequence into the hole
+        long hole = slot;
+        long next = (hole + 1) & mask;
+        while (getInt(next, STATE) != 0) {
+            long home = hash(getLong(next, KEY));
+            if (((next - home) & mask) >= ((next - hole) & mask)) {
+                copy(next, hole);
+                hole = next;
+            }
+            next = (next + 1) & mask;
+        }
+        putInt(hole, STATE, 0);
+        size--;
+        segments[0].putInt(HEADER_SIZE, size);
+        return true;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Walks the buckets of the ticks from the last sweep up to {@code nowMillis}, the whole wheel on the first sweep
+     * or after a revolution or more. A key reported and left with its deadline is next reported a revolution later.
+     */
+    @Override
+    public void expired(long nowMillis, LongConsumer consumer) {
+        long now = nowMillis / TICK_MILLIS;
+        long swept = segments[0].getLong(HEADER_SWEPT);
+        long from = ((swept == 0) || (now - swept >= WHEEL_SIZE)) ? now - WHEEL_SIZE + 1 : Math.min(swept, now);
+        for (long tick = from; tick <= now; tick++) {
+            long next = segments[0].getLong(head(tick));
+            while (next != 0) {
+                long slot = next - 1;
+                next = getLong(slot, NEXT);
+                if (getLong(slot, DEADLINE) <= nowMillis) {
+                    consumer.accept(getLong(slot, KEY));
+                }
+            }
+        }
+        segments[0].putLong(HEADER_SWEPT, now);
+    }
+
+    @Override
+    public long getFingerprint() {
+        return segments[0].getLong(HEADER_FINGERPRINT);
+    }
+
+    @Override
+    public void setFingerprint(long fingerprint) {
+        segments[0].putLong(HEADER_FINGERPRINT, fingerprint);
+    }
+
+    /**
+     * Flushes the mapped pages to disk. Not needed to survive a crash of the process, only of the machine.
+     */
+    public void force() {
+        for (MappedByteBuffer segment : segments) {
+            segment.force();
+        }
+    }
+
+    @Override
+    public void close() {
+        force();
+        try {
+            raf.close();
+        } catch (IOException e) {
+            throw Throwables.propagate(e);
+        }
+    }
+
+    private long find(long key) {
+        long slot = hash(key);
+        while (getInt(slot, STATE) != 0) {
+            if (getLong(slot, KEY) == key) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    private long hash(long key) {
+        // murmur3 finalizer
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        key *= 0xc4ceb9fe1a85ec53L;
+        key ^= key >>> 33;
+        return key & mask;
+    }
+
+    /**
+     * Links {@code slot} first in the bucket of {@code deadline}, or of the last sweep if that is later, so the next
+     * sweep finds it.
+     */
+    private void link(long slot, long deadline) {
+        long tick = Math.max(deadline / TICK_MILLIS, segments[0].getLong(HEADER_SWEPT));
+        int head = head(tick);
+        long first = segments[0].getLong(head);
+        putInt(slot, BUCKET, head);
+        putLong(slot, PREV, 0);
+        putLong(slot, NEXT, first);
+        if (first != 0) {
+            putLong(first - 1, PREV, slot + 1);
+        }
+        segments[0].putLong(head, slot + 1);
+    }
+
+    private void unlink(long slot) {
+        long prev = getLong(slot, PREV);
+        long next = getLong(slot, NEXT);
+        if (prev != 0) {
+            putLong(prev - 1, NEXT, next);
+        } else {
+            segments[0].putLong(getInt(slot, BUCKET), next);
+        }
+        if (next != 0) {
+            putLong(next - 1, PREV, prev);
+        }
+    }
+
+    /**
+     * @return the offset, in the first segment, of the head of the bucket of {@code tick}
+     */
+    private static int head(long tick) {
+        return HEADER_WHEEL + ((int) (tick & (WHEEL_SIZE - 1)) * 8);
+    }
+
+    private void copy(long from, long to) {
+        putLong(to, KEY, getLong(from, KEY));
+        putInt(to, PREVIOUS, getInt(from, PREVIOUS));
+        putLong(to, DEADLINE, getLong(from, DEADLINE));
+        putInt(to, TIMEOUT, getInt(from, TIMEOUT));
+        putInt(to, STATE, getInt(from, STATE));
+        if (getLong(from, DEADLINE) != 0) {
+            // the entry moves: point its neighbours, or its bucket, at the new slot
+            long prev = getLong(from, PREV);
+            long next = getLong(from, NEXT);
+            putInt(to, BUCKET, getInt(from, BUCKET));
+            putLong(to, PREV, prev);
+            putLong(to, NEXT, next);
+            if (prev != 0) {
+                putLong(prev - 1, NEXT, to + 1);
+            } else {
+                segments[0].putLong(getInt(from, BUCKET), to + 1);
+            }
+            if (next != 0) {
+                putLong(next - 1, PREV, to + 1);
+            }
+        }
+    }
+
+    private MappedByteBuffer segment(long slot) {
+        return segments[(int) ((slot + HEADER_SLOTS) >>> SEGMENT_SHIFT)];
+    }
+
+    private int offset(long slot, int field) {
+        return (int) (((slot + HEADER_SLOTS) & ((1L << SEGMENT_SHIFT) - 1)) * SLOT_SIZE) + field;
+    }
+
+    private int getInt(long slot, int field) {
+        return segment(slot).getInt(offset(slot, field));
+    }
+
+    private long getLong(long slot, int field) {
+        return segment(slot).getLong(offset(slot, field));
+    }
+
+    private void putInt(long slot, int field, int value) {
+        segment(slot).putInt(offset(slot, field), value);
+    }
+
+    private void putLong(long slot, int field, long value) {
+        segment(slot).putLong(offset(slot, field), value);
+    }
+}
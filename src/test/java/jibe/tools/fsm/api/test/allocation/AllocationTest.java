@@ -0,0 +1,83 @@
+package jibe.tools.fsm.api.test.allocation;
+
+import jibe.tools.fsm.api.Discovery;
+import jibe.tools.fsm.api.Engine;
+import jibe.tools.fsm.api.StateInstances;
+import jibe.tools.fsm.core.EngineFactory;
+import jibe.tools.fsm.core.VirtualTimeScheduler;
+import org.junit.Assume;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+
+import static jibe.tools.fsm.core.DefaultEngine.configurationBuilder;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class AllocationTest {
+    private static final int WARMUP = 50000;
+    private static final int EVENTS = 100000;
+
+    @Test
+    public void testEventPathDoesNotAllocate() throws Exception {
+        com.sun.management.ThreadMXBean threads = threadMXBean();
+        PingPongFSM fsm = new PingPongFSM();
+        Engine<PingPongFSM, String> engine = EngineFactory.newInstance().newEngine(fsm, configurationBuilder()
+                .discovery(Discovery.Declared)
+                .virtualTime(new VirtualTimeScheduler()));
+        engine.start();
+
+        pingPong(engine, WARMUP);
+
+        long threadId = Thread.currentThread().getId();
+        long before = threads.getThreadAllocatedBytes(threadId);
+        pingPong(engine, EVENTS);
+        long allocated = threads.getThreadAllocatedBytes(threadId) - before;
+
+        assertEquals((WARMUP + EVENTS) / 2, fsm.entered);
+        assertEquals((WARMUP + EVENTS) / 2, fsm.exited);
+        assertTrue("allocated " + allocated + " bytes for " + EVENTS + " events", allocated < 1024);
+        engine.stop();
+    }
+
+    @Test
+    public void testPooledStatesDoNotAllocate() throws Exception {
+        com.sun.management.ThreadMXBean threads = threadMXBean();
+        RallyFSM fsm = new RallyFSM();
+        Engine<RallyFSM, String> engine = EngineFactory.newInstance().newEngine(fsm, configurationBuilder()
+                .discovery(Discovery.Declared)
+                .stateInstances(StateInstances.Pooled)
+                .virtualTime(new VirtualTimeScheduler()));
+        engine.start();
+
+        for (int i = 0; i < WARMUP; i++) {
+            engine.event("hit");
+        }
+
+        long threadId = Thread.currentThread().getId();
+        long before = threads.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < EVENTS; i++) {
+            engine.event("hit");
+        }
+        long allocated = threads.getThreadAllocatedBytes(threadId) - before;
+
+        assertEquals(WARMUP + EVENTS - 1, fsm.longest);
+        assertTrue("allocated " + allocated + " bytes for " + EVENTS + " events", allocated < 1024);
+        engine.stop();
+    }
+
+    private void pingPong(Engine<PingPongFSM, String> engine, int events) {
+        for (int i = 0; i < events; i += 2) {
+            engine.event("pong");
+            engine.event("ping");
+        }
+    }
+
+    private com.sun.management.ThreadMXBean threadMXBean() {
+        Assume.assumeTrue(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean answer = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        Assume.assumeTrue(answer.isThreadAllocatedMemorySupported());
+        answer.setThreadAllocatedMemoryEnabled(true);
+        return answer;
+    }
+}
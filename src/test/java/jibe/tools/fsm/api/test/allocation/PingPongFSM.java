@@ -0,0 +1,44 @@
+package jibe.tools.fsm.api.test.allocation;
+
+import jibe.tools.fsm.annotations.Action;
+import jibe.tools.fsm.annotations.StartState;
+import jibe.tools.fsm.annotations.State;
+import jibe.tools.fsm.annotations.StateMachine;
+import jibe.tools.fsm.annotations.Transition;
+import jibe.tools.fsm.api.ActionType;
+
+@StateMachine
+class PingPongFSM {
+    long entered;
+    long exited;
+
+    @StartState
+    static class Ping {
+        @Transition
+        public Pong pong(String event) {
+            return "pong".equals(event) ? PONG : null;
+        }
+
+        @Action(ActionType.OnExit)
+        public void onExit(PingPongFSM fsm) {
+            fsm.exited++;
+        }
+    }
+
+    @State
+    static class Pong {
+        @Transition
+        public Ping ping(String event) {
+            return "ping".equals(event) ? PING : null;
+        }
+
+        @Action(ActionType.OnEnter)
+        public void onEnter(PingPongFSM fsm) {
+            fsm.entered++;
+        }
+    }
+
+    // only the class of the returned state is used, sharing instances keeps the fsm itself from allocating
+    private static final Ping PING = new Ping();
+    private static final Pong PONG = new Pong();
+}
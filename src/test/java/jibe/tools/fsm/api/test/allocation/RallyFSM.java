@@ -0,0 +1,47 @@
+package jibe.tools.fsm.api.test.allocation;
+
+import jibe.tools.fsm.annotations.Action;
+import jibe.tools.fsm.annotations.StartState;
+import jibe.tools.fsm.annotations.State;
+import jibe.tools.fsm.annotations.StateMachine;
+import jibe.tools.fsm.annotations.Transition;
+import jibe.tools.fsm.api.ActionType;
+import jibe.tools.fsm.api.Context;
+
+/**
+ * Like {@link PingPongFSM}, but every visit carries the length of the rally in a recycled state instance.
+ */
+@StateMachine
+class RallyFSM {
+    private Context context;
+    long longest;
+
+    @StartState
+    class Serve {
+        long rally;
+
+        @Transition(on = "hit")
+        public Return hit(String event) {
+            Return answer = context.recycle(Return.class);
+            answer.rally = rally + 1;
+            return answer;
+        }
+    }
+
+    @State
+    class Return {
+        long rally;
+
+        @Transition(on = "hit")
+        public Serve hit(String event) {
+            Serve answer = context.recycle(Serve.class);
+            answer.rally = rally + 1;
+            return answer;
+        }
+
+        @Action(ActionType.OnEnter)
+        public void onEnter() {
+            longest = Math.max(longest, rally);
+        }
+    }
+}
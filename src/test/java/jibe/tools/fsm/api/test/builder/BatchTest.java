@@ -0,0 +1,54 @@
+package jibe.tools.fsm.api.test.builder;
+
+import jibe.tools.fsm.builder.BatchReport;
+import jibe.tools.fsm.builder.FSMBuilder;
+import jibe.tools.fsm.builder.StartStateBuilder;
+import jibe.tools.fsm.builder.StateBuilder;
+import org.junit.Test;
+
+import java.util.AbstractMap;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static jibe.tools.fsm.builder.FSMBuilder.transition;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ *
+ */
+public class BatchTest {
+    private static final int ENTITIES = 10_000;
+
+    @Test
+    public void testKeysKeepTheirOrderAcrossWorkers() throws Exception {
+        FSMBuilder fsmBuilder = new FSMBuilder();
+        new StartStateBuilder(fsmBuilder, "Idle")
+                .transitions(transition("login").toState("Active").onEvent("login"));
+        new StateBuilder(fsmBuilder, "Active")
+                .transitions(transition("logout").toState("Closed").onEvent("logout"));
+
+        // every key logs in twice, the second one unhandled, and every other one logs out
+        Stream<Map.Entry<Integer, String>> records = Stream.of("login", "login", "logout")
+                .flatMap(event -> IntStream.range(0, ENTITIES)
+                        .filter(key -> !"logout".equals(event) || (key % 2 == 0))
+                        .mapToObj(key -> new AbstractMap.SimpleEntry<>(key, event)));
+
+        ForkJoinPool pool = new ForkJoinPool(4);
+        BatchReport<Integer> report = fsmBuilder.<Integer, String>batch(pool).run(records);
+        pool.shutdown();
+
+        assertEquals(ENTITIES, report.getKeys());
+        assertEquals(ENTITIES * 2 + ENTITIES / 2, report.getEvents());
+        assertEquals(ENTITIES + ENTITIES / 2, report.getTransitions());
+        assertEquals(ENTITIES, report.getUnhandled());
+        assertEquals(ENTITIES / 2, (long) report.getStateCounts().get("Closed"));
+        assertEquals(ENTITIES / 2, (long) report.getStateCounts().get("Active"));
+        assertEquals(ENTITIES, (long) report.getTransitionCounts().get("login"));
+        assertEquals("Closed", report.getState(42));
+        assertEquals("Active", report.getState(43));
+        assertNull(report.getState(ENTITIES));
+    }
+}
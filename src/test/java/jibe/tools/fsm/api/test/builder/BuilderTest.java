@@ -3,10 +3,27 @@ package jibe.tools.fsm.api.test.builder;
 import jibe.tools.fsm.api.Engine;
 import jibe.tools.fsm.builder.FSMBuilder;
 import jibe.tools.fsm.builder.StartStateBuilder;
+import jibe.tools.fsm.builder.StateBuilder;
+import jibe.tools.fsm.core.VirtualTimeScheduler;
+import jibe.tools.fsm.store.MappedStateStore;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.AbstractMap;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Stream;
+
+import static com.google.common.collect.Lists.newArrayList;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static jibe.tools.fsm.builder.FSMBuilder.timeout;
 import static jibe.tools.fsm.builder.FSMBuilder.transition;
+import static jibe.tools.fsm.core.DefaultEngine.configurationBuilder;
+import static org.junit.Assert.assertEquals;
 
 /**
  *
@@ -14,6 +31,9 @@ import static jibe.tools.fsm.builder.FSMBuilder.transition;
 public class BuilderTest {
     private static final Logger LOGGER = LoggerFactory.getLogger(BuilderTest.class);
 
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
     public static void main(String[] args) {
         FSMBuilder fsmBuilder = new FSMBuilder();
 
@@ -21,7 +41,7 @@ public class BuilderTest {
                 .transitions(
                         transition("t1").toState("StateA").onEvent("a"),
                         transition("t2").toState("Start").onEvent("start"))
-                .onEnter("e -> println(e)");
+                .onEnter(e -> { });
 
         Engine engine = fsmBuilder.build();
 
@@ -29,4 +49,68 @@ public class BuilderTest {
 
         engine.event("a");
     }
+
+    @Test
+    public void testTable() {
+        List<String> trace = newArrayList();
+        FSMBuilder fsmBuilder = new FSMBuilder();
+
+        new StartStateBuilder(fsmBuilder, "Start")
+                .transitions(
+                        transition("t1").toState("StateA").onEvent("a").action(e -> trace.add("t1")),
+                        transition("t2").toState("Counting").onEvent(Integer.class).guard(e -> ((Integer) e) > 10))
+                .onExit(e -> trace.add("exit Start"));
+
+        new StateBuilder(fsmBuilder, "Counting")
+                .timeouts(timeout("back").to("Start").after(5, SECONDS))
+                .onEnter(e -> trace.add("enter Counting " + e));
+
+        VirtualTimeScheduler time = new VirtualTimeScheduler();
+        Engine<?, Object> engine = fsmBuilder.build(configurationBuilder().virtualTime(time));
+        engine.start();
+        assertEquals("Start", engine.getSnapshot().getCurrentState().get());
+
+        engine.event(5);
+        assertEquals("Start", engine.getSnapshot().getCurrentState().get());
+        engine.event(11);
+        assertEquals("Counting", engine.getSnapshot().getCurrentState().get());
+
+        time.advanceBy(5, SECONDS);
+        assertEquals("Start", engine.getSnapshot().getCurrentState().get());
+
+        engine.event("a");
+        assertEquals("StateA", engine.getSnapshot().getCurrentState().get());
+        assertEquals(newArrayList("exit Start", "enter Counting 11", "exit Start", "t1"), trace);
+        engine.stop();
+    }
+
+    @Test
+    public void testInterpretersEnterStartStateWithoutEvent() throws Exception {
+        List<String> trace = newArrayList();
+        FSMBuilder fsmBuilder = new FSMBuilder();
+        new StartStateBuilder(fsmBuilder, "Start")
+                .transitions(transition("t1").toState("StateA").onEvent("a"))
+                .onEnter(e -> trace.add("enter Start " + e));
+        new StateBuilder(fsmBuilder, "StateA")
+                .onEnter(e -> trace.add("enter StateA " + e));
+        List<String> expected = Arrays.asList("enter Start null", "enter StateA a");
+
+        Engine<?, Object> engine = fsmBuilder.build(configurationBuilder().virtualTime(new VirtualTimeScheduler()));
+        engine.start();
+        engine.event("a");
+        engine.stop();
+        assertEquals(expected, trace);
+
+        trace.clear();
+        MappedStateStore store = new MappedStateStore(folder.newFile("start.fsm"), 16);
+        fsmBuilder.<String>build(store, new VirtualTimeScheduler()).event(1, "a");
+        store.close();
+        assertEquals(expected, trace);
+
+        trace.clear();
+        ForkJoinPool pool = new ForkJoinPool(1);
+        fsmBuilder.<Integer, String>batch(pool).run(Stream.of(new AbstractMap.SimpleEntry<>(1, "a")));
+        pool.shutdown();
+        assertEquals(expected, trace);
+    }
 }
@@ -0,0 +1,129 @@
+package jibe.tools.fsm.api.test.builder;
+
+import jibe.tools.fsm.builder.FSMBuilder;
+import jibe.tools.fsm.builder.StartStateBuilder;
+import jibe.tools.fsm.builder.StateBuilder;
+import jibe.tools.fsm.builder.StoreEngine;
+import jibe.tools.fsm.core.VirtualTimeScheduler;
+import jibe.tools.fsm.store.MappedStateStore;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static jibe.tools.fsm.builder.FSMBuilder.timeout;
+import static jibe.tools.fsm.builder.FSMBuilder.transition;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ *
+ */
+public class StoreTest {
+    private static final int ENTITIES = 100_000;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static FSMBuilder session() {
+        FSMBuilder fsmBuilder = new FSMBuilder();
+        new StartStateBuilder(fsmBuilder, "Idle")
+                .transitions(transition("login").toState("Active").onEvent("login"));
+        new StateBuilder(fsmBuilder, "Active")
+                .transitions(transition("logout").toState("Idle").onEvent("logout"))
+                .timeouts(timeout("expire").to("Expired").after(30, SECONDS));
+        return fsmBuilder;
+    }
+
+    @Test
+    public void testStateSurvivesReopen() throws Exception {
+        File file = folder.newFile("sessions.fsm");
+        VirtualTimeScheduler time = new VirtualTimeScheduler(1000);
+
+        MappedStateStore store = new MappedStateStore(file, ENTITIES * 2);
+        StoreEngine<String> engine = session().build(store, time);
+        for (long key = 0; key < ENTITIES; key++) {
+            engine.event(key, "login");
+        }
+        for (long key = 0; key < ENTITIES; key += 2) {
+            engine.event(key, "logout");
+        }
+        engine.remove(1);
+        assertEquals(ENTITIES - 1, store.size());
+        store.close();
+
+        store = new MappedStateStore(file, 0);
+        engine = session().build(store, time);
+        assertEquals(ENTITIES - 1, store.size());
+        assertEquals("Idle", engine.getState(0));
+        assertNull(engine.getState(1));
+        assertEquals("Active", engine.getState(3));
+
+        time.advanceBy(29, SECONDS);
+        assertEquals(0, engine.sweep());
+        time.advanceBy(1, SECONDS);
+        assertEquals(ENTITIES / 2 - 1, engine.sweep());
+        assertEquals("Expired", engine.getState(3));
+        assertEquals("Idle", engine.getState(4));
+        assertEquals(0, engine.sweep());
+        store.close();
+    }
+
+    @Test
+    public void testSweepFindsDeadlinesOfEntriesMovedByRemoval() throws Exception {
+        // a small, dense table: removals shift entries with pending deadlines into other slots
+        MappedStateStore store = new MappedStateStore(folder.newFile("dense.fsm"), 1024);
+        VirtualTimeScheduler time = new VirtualTimeScheduler(1000);
+        StoreEngine<String> engine = session().build(store, time);
+        Random random = new Random(42);
+        Set<Long> active = new HashSet<>();
+        for (int i = 0; i < 20_000; i++) {
+            long key = random.nextInt(900);
+            if (active.size() > 700) {
+                engine.remove(key);
+                active.remove(key);
+                continue;
+            }
+            switch (random.nextInt(3)) {
+            case 0:
+                engine.event(key, "login");
+                if ("Active".equals(engine.getState(key))) {
+                    active.add(key);
+                }
+                break;
+            case 1:
+                engine.event(key, "logout");
+                active.remove(key);
+                break;
+            default:
+                engine.remove(key);
+                active.remove(key);
+            }
+        }
+
+        time.advanceBy(30, SECONDS);
+        assertEquals(active.size(), engine.sweep());
+        for (long key : active) {
+            assertEquals("Expired", engine.getState(key));
+        }
+        assertEquals(0, engine.sweep());
+        store.close();
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testOtherDefinitionRejected() throws Exception {
+        File file = folder.newFile("other.fsm");
+        MappedStateStore store = new MappedStateStore(file, 16);
+        session().build(store, new VirtualTimeScheduler());
+        store.close();
+
+        FSMBuilder other = new FSMBuilder();
+        new StartStateBuilder(other, "Off").transitions(transition("on").toState("On").onEvent("on"));
+        other.build(new MappedStateStore(file, 16), new VirtualTimeScheduler());
+    }
+}
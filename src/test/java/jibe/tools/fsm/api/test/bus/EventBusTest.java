@@ -0,0 +1,56 @@
+package jibe.tools.fsm.api.test.bus;
+
+import jibe.tools.fsm.api.Discovery;
+import jibe.tools.fsm.core.DefaultEngine;
+import jibe.tools.fsm.core.EngineFactory;
+import jibe.tools.fsm.core.EventBus;
+import jibe.tools.fsm.core.VirtualTimeScheduler;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static jibe.tools.fsm.core.DefaultEngine.configurationBuilder;
+import static org.junit.Assert.assertEquals;
+
+public class EventBusTest {
+    @Test
+    public void testPublishReachesInterestedEnginesOnly() throws Exception {
+        EventBus bus = new EventBus();
+        DefaultEngine<LampFSM, String> lamp = engine(new LampFSM());
+        DefaultEngine<LampFSM, String> other = engine(new LampFSM());
+        MeterFSM meterFsm = new MeterFSM();
+        DefaultEngine<MeterFSM, Integer> meter = engine(meterFsm);
+        bus.register(lamp).register(other).register(meter);
+
+        assertEquals(2, bus.publish("on"));
+        assertEquals(LampFSM.On.class, lamp.getSnapshot().getCurrentState().get());
+        assertEquals(LampFSM.On.class, other.getSnapshot().getCurrentState().get());
+
+        assertEquals(1, bus.publish(4));
+        assertEquals(0, bus.publish(1.5));
+        assertEquals(4, meterFsm.total);
+
+        // batched: each engine gets its events in order
+        assertEquals(4, bus.publish(Arrays.asList(1, "off", 2)));
+        assertEquals(LampFSM.Off.class, lamp.getSnapshot().getCurrentState().get());
+        assertEquals(7, meterFsm.total);
+
+        other.stop();
+        bus.unregister(meter);
+        assertEquals(1, bus.publish("on"));
+        assertEquals(0, bus.publish(1));
+        assertEquals(1, bus.getRefused());
+        assertEquals(8, bus.getDelivered());
+        lamp.stop();
+        meter.stop();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <F, E> DefaultEngine<F, E> engine(F fsm) {
+        DefaultEngine<F, E> engine = (DefaultEngine<F, E>) EngineFactory.newInstance().<F, E>newEngine(fsm, configurationBuilder()
+                .discovery(Discovery.Declared)
+                .virtualTime(new VirtualTimeScheduler()));
+        engine.start();
+        return engine;
+    }
+}
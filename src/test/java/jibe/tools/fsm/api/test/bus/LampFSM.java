@@ -0,0 +1,28 @@
+package jibe.tools.fsm.api.test.bus;
+
+import jibe.tools.fsm.annotations.StartState;
+import jibe.tools.fsm.annotations.State;
+import jibe.tools.fsm.annotations.StateMachine;
+import jibe.tools.fsm.annotations.Transition;
+
+/**
+ * Switched by string commands.
+ */
+@StateMachine
+class LampFSM {
+    @StartState
+    class Off {
+        @Transition(on = "on")
+        public On on(String event) {
+            return new On();
+        }
+    }
+
+    @State
+    class On {
+        @Transition(on = "off")
+        public Off off(String event) {
+            return new Off();
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package jibe.tools.fsm.api.test.bus;
+
+import jibe.tools.fsm.annotations.StartState;
+import jibe.tools.fsm.annotations.StateMachine;
+import jibe.tools.fsm.annotations.Transition;
+
+/**
+ * Sums integer readings.
+ */
+@StateMachine
+class MeterFSM {
+    int total;
+
+    @StartState
+    class Counting {
+        @Transition
+        public Counting reading(Integer value) {
+            total += value;
+            return new Counting();
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package jibe.tools.fsm.api.test.deadline;
+
+import com.google.common.util.concurrent.Uninterruptibles;
+import com.jayway.awaitility.Awaitility;
+import com.jayway.awaitility.Duration;
+import jibe.tools.fsm.api.Discovery;
+import jibe.tools.fsm.core.DefaultEngine;
+import jibe.tools.fsm.core.EngineFactory;
+import jibe.tools.fsm.core.VirtualTimeScheduler;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static com.google.common.collect.Lists.newArrayList;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static jibe.tools.fsm.core.DefaultEngine.configurationBuilder;
+import static org.junit.Assert.assertEquals;
+
+public class DeadlineTest {
+    @Test
+    public void testExpiredEventsAreShed() throws Exception {
+        WorkFSM fsm = new WorkFSM();
+        VirtualTimeScheduler time = new VirtualTimeScheduler();
+        List<Object> deadLetters = new CopyOnWriteArrayList<>();
+        DefaultEngine<WorkFSM, String> engine = (DefaultEngine<WorkFSM, String>) EngineFactory.newInstance()
+                .<WorkFSM, String>newEngine(fsm, configurationBuilder()
+                        .discovery(Discovery.Declared)
+                        .clock(time)
+                        .eventDeadline(String.class, 1, SECONDS)
+                        .deadLetters(deadLetters::add));
+        engine.start();
+
+        engine.event("stall");
+        Uninterruptibles.awaitUninterruptibly(fsm.stalled);
+        engine.event("a");
+        engine.event("b");
+        engine.event("c", 10, SECONDS);
+
+        // the callers of "a" and "b" have given up by the time the engine gets to them
+        time.advanceBy(2, SECONDS);
+        fsm.gate.countDown();
+        Awaitility.await()
+                .atMost(Duration.ONE_SECOND)
+                .until(() -> fsm.done.size() == 2);
+
+        assertEquals(newArrayList("stall", "c"), fsm.done);
+        assertEquals(2, engine.getExpiredEvents());
+        assertEquals(newArrayList("a", "b"), deadLetters);
+        engine.stop();
+    }
+}
@@ -0,0 +1,33 @@
+package jibe.tools.fsm.api.test.deadline;
+
+import com.google.common.util.concurrent.Uninterruptibles;
+import jibe.tools.fsm.annotations.StartState;
+import jibe.tools.fsm.annotations.StateMachine;
+import jibe.tools.fsm.annotations.Transition;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Does jobs, the one called "stall" holding up the engine until the gate opens.
+ */
+@StateMachine
+class WorkFSM {
+    final CountDownLatch gate = new CountDownLatch(1);
+    final CountDownLatch stalled = new CountDownLatch(1);
+    final List<String> done = new CopyOnWriteArrayList<>();
+
+    @StartState
+    class Ready {
+        @Transition
+        public Ready work(String job) {
+            if ("stall".equals(job)) {
+                stalled.countDown();
+                Uninterruptibles.awaitUninterruptibly(gate);
+            }
+            done.add(job);
+            return new Ready();
+        }
+    }
+}
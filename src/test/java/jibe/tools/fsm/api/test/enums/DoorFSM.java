@@ -0,0 +1,55 @@
+package jibe.tools.fsm.api.test.enums;
+
+import jibe.tools.fsm.annotations.Action;
+import jibe.tools.fsm.annotations.StartState;
+import jibe.tools.fsm.annotations.State;
+import jibe.tools.fsm.annotations.StateMachine;
+import jibe.tools.fsm.annotations.Transition;
+import jibe.tools.fsm.api.ActionType;
+
+@StateMachine
+class DoorFSM {
+    enum Signal {
+        OPEN,
+        CLOSE,
+        LOCK,
+        UNLOCK,
+        ALARM {
+            @Action(ActionType.Implied)
+            public void sound() {
+                alarms++;
+            }
+        };
+
+        static int alarms;
+    }
+
+    @StartState
+    static class Closed {
+        @Transition(on = "OPEN")
+        public Opened open(Signal signal) {
+            return new Opened();
+        }
+
+        @Transition(on = "LOCK")
+        public Locked lock(Signal signal) {
+            return new Locked();
+        }
+    }
+
+    @State
+    static class Opened {
+        @Transition(on = "CLOSE")
+        public Closed close(Signal signal) {
+            return new Closed();
+        }
+    }
+
+    @State
+    static class Locked {
+        @Transition(on = "UNLOCK")
+        public Closed unlock(Signal signal) {
+            return new Closed();
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package jibe.tools.fsm.api.test.enums;
+
+import jibe.tools.fsm.api.Discovery;
+import jibe.tools.fsm.api.Engine;
+import jibe.tools.fsm.core.EngineFactory;
+import jibe.tools.fsm.core.VirtualTimeScheduler;
+import org.junit.Test;
+
+import static jibe.tools.fsm.api.test.enums.DoorFSM.Signal.ALARM;
+import static jibe.tools.fsm.api.test.enums.DoorFSM.Signal.CLOSE;
+import static jibe.tools.fsm.api.test.enums.DoorFSM.Signal.LOCK;
+import static jibe.tools.fsm.api.test.enums.DoorFSM.Signal.OPEN;
+import static jibe.tools.fsm.api.test.enums.DoorFSM.Signal.UNLOCK;
+import static jibe.tools.fsm.core.DefaultEngine.configurationBuilder;
+import static org.junit.Assert.assertEquals;
+
+public class EnumTest {
+    @Test
+    public void testEnumDispatch() throws Exception {
+        Engine<DoorFSM, DoorFSM.Signal> engine = EngineFactory.newInstance().newEngine(new DoorFSM(), configurationBuilder()
+                .discovery(Discovery.Declared)
+                .virtualTime(new VirtualTimeScheduler()));
+        engine.start();
+        assertEquals(DoorFSM.Closed.class, engine.getSnapshot().getCurrentState().get());
+
+        engine.event(UNLOCK);
+        assertEquals(DoorFSM.Closed.class, engine.getSnapshot().getCurrentState().get());
+        engine.event(OPEN);
+        assertEquals(DoorFSM.Opened.class, engine.getSnapshot().getCurrentState().get());
+        engine.event(LOCK);
+        assertEquals(DoorFSM.Opened.class, engine.getSnapshot().getCurrentState().get());
+        engine.event(CLOSE);
+        engine.event(LOCK);
+        assertEquals(DoorFSM.Locked.class, engine.getSnapshot().getCurrentState().get());
+
+        engine.event(ALARM);
+        assertEquals(1, DoorFSM.Signal.alarms);
+        engine.event(UNLOCK);
+        assertEquals(DoorFSM.Closed.class, engine.getSnapshot().getCurrentState().get());
+        engine.stop();
+    }
+}
@@ -0,0 +1,37 @@
+package jibe.tools.fsm.api.test.filter;
+
+import jibe.tools.fsm.api.Discovery;
+import jibe.tools.fsm.api.EventFilter;
+import jibe.tools.fsm.core.DefaultEngine;
+import jibe.tools.fsm.core.EngineFactory;
+import jibe.tools.fsm.core.VirtualTimeScheduler;
+import org.junit.Test;
+
+import static jibe.tools.fsm.api.test.filter.SwitchFSM.Command.OFF;
+import static jibe.tools.fsm.api.test.filter.SwitchFSM.Command.ON;
+import static jibe.tools.fsm.core.DefaultEngine.configurationBuilder;
+import static org.junit.Assert.assertEquals;
+
+public class EventFilterTest {
+    @Test
+    public void testEventFilter() throws Exception {
+        DefaultEngine<SwitchFSM, SwitchFSM.Command> engine = (DefaultEngine<SwitchFSM, SwitchFSM.Command>) EngineFactory.newInstance()
+                .<SwitchFSM, SwitchFSM.Command>newEngine(new SwitchFSM(), configurationBuilder()
+                        .discovery(Discovery.Declared)
+                        .eventFilter(EventFilter.Idle)
+                        .virtualTime(new VirtualTimeScheduler()));
+        engine.start();
+
+        engine.event(OFF);
+        engine.event(OFF);
+        assertEquals(2, engine.getFilteredEvents());
+
+        engine.event(ON);
+        assertEquals(SwitchFSM.On.class, engine.getSnapshot().getCurrentState().get());
+        engine.event(ON);
+        assertEquals(3, engine.getFilteredEvents());
+        engine.event(OFF);
+        assertEquals(SwitchFSM.Off.class, engine.getSnapshot().getCurrentState().get());
+        engine.stop();
+    }
+}
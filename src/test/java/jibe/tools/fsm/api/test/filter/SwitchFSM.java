@@ -0,0 +1,33 @@
+package jibe.tools.fsm.api.test.filter;
+
+import jibe.tools.fsm.annotations.StartState;
+import jibe.tools.fsm.annotations.State;
+import jibe.tools.fsm.annotations.StateMachine;
+import jibe.tools.fsm.annotations.Transition;
+
+/**
+ * A switch, each of its states taking one command only.
+ */
+@StateMachine
+class SwitchFSM {
+    enum Command {
+        ON,
+        OFF
+    }
+
+    @StartState
+    static class Off {
+        @Transition(on = "ON")
+        public On on(Command command) {
+            return new On();
+        }
+    }
+
+    @State
+    static class On {
+        @Transition(on = "OFF")
+        public Off off(Command command) {
+            return new Off();
+        }
+    }
+}
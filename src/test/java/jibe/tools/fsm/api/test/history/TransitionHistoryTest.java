@@ -0,0 +1,85 @@
+package jibe.tools.fsm.api.test.history;
+
+import com.google.common.util.concurrent.Uninterruptibles;
+import com.jayway.awaitility.Awaitility;
+import com.jayway.awaitility.Duration;
+import jibe.tools.fsm.api.Discovery;
+import jibe.tools.fsm.api.StreamOverflow;
+import jibe.tools.fsm.core.DefaultEngine;
+import jibe.tools.fsm.core.EngineFactory;
+import jibe.tools.fsm.core.TransitionRecorder;
+import jibe.tools.fsm.core.TransitionStream;
+import jibe.tools.fsm.core.VirtualTimeScheduler;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+
+import static jibe.tools.fsm.core.DefaultEngine.configurationBuilder;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TransitionHistoryTest {
+    @Test
+    public void testTransitionHistory() throws Exception {
+        VirtualTimeScheduler scheduler = new VirtualTimeScheduler(1000);
+        DefaultEngine<TurnstileFSM, String> engine = (DefaultEngine<TurnstileFSM, String>) EngineFactory.newInstance()
+                .<TurnstileFSM, String>newEngine(new TurnstileFSM(), configurationBuilder()
+                        .discovery(Discovery.Declared)
+                        .transitionHistory(4)
+                        .virtualTime(scheduler));
+        engine.start();
+        for (int i = 0; i < 3; i++) {
+            engine.event("coin");
+            engine.event("push");
+        }
+
+        TransitionRecorder recorder = engine.getTransitionRecorder().get();
+        assertEquals(6, recorder.written());
+        List<TransitionRecorder.Entry> history = recorder.dump();
+        assertEquals(4, history.size());
+        assertEquals(2, history.get(0).getSequence());
+        assertEquals(TurnstileFSM.Locked.class, history.get(0).getFromState());
+        assertEquals(TurnstileFSM.Unlocked.class, history.get(0).getToState());
+        assertEquals(String.class, history.get(0).getEventType());
+        assertEquals(1000, history.get(0).getTimestampMillis());
+        assertTrue(recorder.toString().contains(TurnstileFSM.Unlocked.class.getName()));
+        engine.stop();
+    }
+
+    @Test
+    public void testTransitionStreamDropsForSlowSubscriber() throws Exception {
+        DefaultEngine<TurnstileFSM, String> engine = (DefaultEngine<TurnstileFSM, String>) EngineFactory.newInstance()
+                .<TurnstileFSM, String>newEngine(new TurnstileFSM(), configurationBuilder()
+                        .discovery(Discovery.Declared)
+                        .transitionStream(8, StreamOverflow.Drop)
+                        .virtualTime(new VirtualTimeScheduler()));
+        engine.start();
+
+        List<TransitionRecorder.Entry> received = new CopyOnWriteArrayList<>();
+        CountDownLatch slow = new CountDownLatch(1);
+        TransitionStream stream = engine.getTransitionStream().get();
+        TransitionStream.Subscription subscription = stream.subscribe(batch -> {
+            received.addAll(batch);
+            Uninterruptibles.awaitUninterruptibly(slow);
+        });
+
+        engine.event("coin");
+        Awaitility.await().atMost(Duration.ONE_SECOND).until(() -> received.size() == 1);
+
+        // the subscriber is stuck in its first batch: the ring fills up and the engine carries on
+        for (int i = 0; i < 10; i++) {
+            engine.event("push");
+            engine.event("coin");
+        }
+        assertEquals(12, stream.dropped());
+        assertEquals(8, subscription.lag());
+
+        slow.countDown();
+        Awaitility.await().atMost(Duration.ONE_SECOND).until(() -> received.size() == 9);
+        assertEquals(0, subscription.lag());
+        assertEquals(TurnstileFSM.Unlocked.class, received.get(1).getFromState());
+        engine.stop();
+    }
+}
@@ -0,0 +1,28 @@
+package jibe.tools.fsm.api.test.history;
+
+import jibe.tools.fsm.annotations.StartState;
+import jibe.tools.fsm.annotations.State;
+import jibe.tools.fsm.annotations.StateMachine;
+import jibe.tools.fsm.annotations.Transition;
+
+/**
+ * A turnstile unlocked by a coin and locked again by a push.
+ */
+@StateMachine
+class TurnstileFSM {
+    @StartState
+    static class Locked {
+        @Transition(on = "coin")
+        public Unlocked coin(String event) {
+            return new Unlocked();
+        }
+    }
+
+    @State
+    static class Unlocked {
+        @Transition(on = "push")
+        public Locked push(String event) {
+            return new Locked();
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package jibe.tools.fsm.api.test.jfr;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import jibe.tools.fsm.api.Discovery;
+import jibe.tools.fsm.api.Engine;
+import jibe.tools.fsm.core.EngineFactory;
+import jibe.tools.fsm.core.VirtualTimeScheduler;
+import org.junit.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static jibe.tools.fsm.core.DefaultEngine.configurationBuilder;
+import static org.junit.Assert.assertEquals;
+
+public class FlightRecorderTest {
+    @Test
+    public void testTransitionEvents() throws Exception {
+        Path file = Files.createTempFile("fsm", ".jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable("jibe.fsm.Transition");
+            recording.enable("jibe.fsm.Engine");
+            recording.start();
+
+            Engine<PumpFSM, String> engine = EngineFactory.newInstance().newEngine(new PumpFSM(), configurationBuilder()
+                    .discovery(Discovery.Declared)
+                    .virtualTime(new VirtualTimeScheduler()));
+            engine.start();
+            engine.event("start");
+            engine.event("stop");
+            engine.stop();
+
+            recording.stop();
+            recording.dump(file);
+        }
+
+        List<RecordedEvent> events = RecordingFile.readAllEvents(file);
+        Files.delete(file);
+
+        int transitions = 0;
+        int phases = 0;
+        for (RecordedEvent e : events) {
+            if (e.getEventType().getName().equals("jibe.fsm.Transition")) {
+                if (transitions++ == 0) {
+                    assertEquals(PumpFSM.Idle.class.getName(), e.getString("fromState"));
+                    assertEquals(PumpFSM.Running.class.getName(), e.getString("toState"));
+                    assertEquals(String.class.getName(), e.getString("eventType"));
+                }
+            } else {
+                phases++;
+            }
+        }
+        assertEquals(2, transitions);
+        assertEquals(2, phases);
+    }
+}
@@ -0,0 +1,28 @@
+package jibe.tools.fsm.api.test.jfr;
+
+import jibe.tools.fsm.annotations.StartState;
+import jibe.tools.fsm.annotations.State;
+import jibe.tools.fsm.annotations.StateMachine;
+import jibe.tools.fsm.annotations.Transition;
+
+/**
+ * A pump started and stopped.
+ */
+@StateMachine
+class PumpFSM {
+    @StartState
+    static class Idle {
+        @Transition(on = "start")
+        public Running start(String event) {
+            return new Running();
+        }
+    }
+
+    @State
+    static class Running {
+        @Transition(on = "stop")
+        public Idle stop(String event) {
+            return new Idle();
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package jibe.tools.fsm.api.test.journal;
+
+import com.google.common.util.concurrent.Uninterruptibles;
+import jibe.tools.fsm.annotations.Action;
+import jibe.tools.fsm.annotations.StartState;
+import jibe.tools.fsm.annotations.State;
+import jibe.tools.fsm.annotations.StateMachine;
+import jibe.tools.fsm.annotations.Transition;
+import jibe.tools.fsm.api.ActionType;
+
+import java.util.concurrent.CountDownLatch;
+
+@StateMachine
+class JournalFSM {
+    /**
+     * Holds the engine on entering {@link Open}, while events queue up behind.
+     */
+    CountDownLatch gate = new CountDownLatch(0);
+
+    @StartState
+    static class Closed {
+        @Transition
+        public Open open(String event) {
+            if ("jam".equals(event)) {
+                throw new IllegalStateException("jammed");
+            }
+            return "open".equals(event) ? new Open() : null;
+        }
+    }
+
+    @State
+    static class Open {
+        @Action(ActionType.OnEnter)
+        public void onEnter(JournalFSM fsm) {
+            Uninterruptibles.awaitUninterruptibly(fsm.gate);
+        }
+
+        @Transition
+        public Closed close(String event) {
+            return "close".equals(event) ? new Closed() : null;
+        }
+    }
+}
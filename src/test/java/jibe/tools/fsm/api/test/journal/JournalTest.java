@@ -0,0 +1,126 @@
+package jibe.tools.fsm.api.test.journal;
+
+import com.jayway.awaitility.Awaitility;
+import com.jayway.awaitility.Duration;
+import jibe.tools.fsm.api.EventCodec;
+import jibe.tools.fsm.api.Engine;
+import jibe.tools.fsm.api.Supervision;
+import jibe.tools.fsm.core.DefaultEngine;
+import jibe.tools.fsm.core.EngineFactory;
+import jibe.tools.fsm.core.VirtualTimeScheduler;
+import jibe.tools.fsm.journal.MappedJournal;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.concurrent.CountDownLatch;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+import static jibe.tools.fsm.core.DefaultEngine.configurationBuilder;
+
+public class JournalTest {
+    private static final EventCodec<String> CODEC = new EventCodec<String>() {
+        @Override
+        public byte[] encode(String event) {
+            return event.getBytes(StandardCharsets.UTF_8);
+        }
+
+        @Override
+        public String decode(byte[] bytes) {
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+    };
+
+    @Test
+    public void testRecoverFromJournal() throws Exception {
+        File dir = Files.createTempDirectory("journal").toFile();
+
+        Engine<JournalFSM, String> engine = newEngine(dir);
+        engine.start();
+        for (int i = 0; i < 11; i++) {
+            engine.event((i % 2) == 0 ? "open" : "close");
+        }
+        awaitState(engine, JournalFSM.Open.class);
+        engine.stop();
+
+        Engine<JournalFSM, String> recovered = newEngine(dir);
+        recovered.start();
+        awaitState(recovered, JournalFSM.Open.class);
+        recovered.event("close");
+        awaitState(recovered, JournalFSM.Closed.class);
+        recovered.stop();
+    }
+
+    @Test
+    public void testRecoverPastEventDroppedBySupervision() throws Exception {
+        File dir = Files.createTempDirectory("journal").toFile();
+
+        Engine<JournalFSM, String> engine = newResumingEngine(dir);
+        engine.start();
+        engine.event("jam");
+        engine.event("open");
+        awaitState(engine, JournalFSM.Open.class);
+        engine.stop();
+
+        // the jam is not replayed, so recovery neither fails nor ends elsewhere
+        Engine<JournalFSM, String> recovered = newResumingEngine(dir);
+        recovered.start();
+        awaitState(recovered, JournalFSM.Open.class);
+        recovered.event("close");
+        awaitState(recovered, JournalFSM.Closed.class);
+        recovered.stop();
+    }
+
+    @Test
+    public void testRecoverPastEventExpiredInQueue() throws Exception {
+        File dir = Files.createTempDirectory("journal").toFile();
+        VirtualTimeScheduler time = new VirtualTimeScheduler();
+
+        JournalFSM fsm = new JournalFSM();
+        fsm.gate = new CountDownLatch(1);
+        DefaultEngine<JournalFSM, String> engine = (DefaultEngine<JournalFSM, String>) EngineFactory.newInstance()
+                .<JournalFSM, String>newEngine(fsm, configurationBuilder()
+                        .clock(time)
+                        .journal(new MappedJournal<>(dir, CODEC, 4096, 4, 1000)));
+        engine.start();
+        engine.event("open");
+        engine.event("close", 1, SECONDS);
+        time.advanceBy(2, SECONDS);
+        fsm.gate.countDown();
+        Awaitility.await()
+                .atMost(Duration.ONE_SECOND)
+                .until(() -> engine.getExpiredEvents() == 1);
+        awaitState(engine, JournalFSM.Open.class);
+        engine.stop();
+
+        // the close the live engine discarded is not replayed either
+        Engine<JournalFSM, String> recovered = EngineFactory.newInstance().newEngine(new JournalFSM(), configurationBuilder()
+                .clock(time)
+                .journal(new MappedJournal<>(dir, CODEC, 4096, 4, 1000)));
+        recovered.start();
+        awaitState(recovered, JournalFSM.Open.class);
+        recovered.stop();
+    }
+
+    private Engine<JournalFSM, String> newResumingEngine(File dir) {
+        // no snapshot, so recovery replays every event
+        return EngineFactory.newInstance().newEngine(new JournalFSM(), configurationBuilder()
+                .supervision(Supervision.Resume)
+                .journal(new MappedJournal<>(dir, CODEC, 4096, 4, 1000)));
+    }
+
+    private Engine<JournalFSM, String> newEngine(File dir) {
+        return EngineFactory.newInstance().newEngine(new JournalFSM(), configurationBuilder()
+                .journal(new MappedJournal<>(dir, CODEC, 4096, 4, 3)));
+    }
+
+    private void awaitState(Engine<JournalFSM, String> engine, Class<?> state) {
+        Awaitility.await()
+            .atMost(Duration.ONE_SECOND)
+            .pollInterval(Duration.ONE_HUNDRED_MILLISECONDS)
+            .until(() -> engine.getSnapshot().getCurrentState().isPresent() &&
+                             engine.getSnapshot().getCurrentState().get().equals(state));
+    }
+}
@@ -0,0 +1,97 @@
+package jibe.tools.fsm.api.test.keyed;
+
+import jibe.tools.fsm.api.Discovery;
+import jibe.tools.fsm.core.DefaultEngine;
+import jibe.tools.fsm.core.EngineFactory;
+import jibe.tools.fsm.core.VirtualTimeScheduler;
+import org.junit.Before;
+import org.junit.Test;
+
+import static jibe.tools.fsm.core.DefaultEngine.configurationBuilder;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class KeyedTransitionTest {
+    private DefaultEngine<ValveFSM, Integer> engine;
+
+    @Before
+    public void setUp() {
+        engine = (DefaultEngine<ValveFSM, Integer>) EngineFactory.newInstance()
+                .<ValveFSM, Integer>newEngine(new ValveFSM(), configurationBuilder()
+                        .discovery(Discovery.Declared)
+                        .virtualTime(new VirtualTimeScheduler()));
+        engine.start();
+    }
+
+    @Test
+    public void testKeysAreParsedWithValueOf() throws Exception {
+        // "+100" and "050" parse to the values sent
+        engine.event(100);
+        assertEquals(ValveFSM.Open.Full.class, currentState());
+        engine.event(50);
+        assertEquals(ValveFSM.Open.Half.class, currentState());
+
+        // no transition keyed on the value: nothing happens
+        engine.event(42);
+        assertEquals(ValveFSM.Open.Half.class, currentState());
+        engine.stop();
+    }
+
+    @Test
+    public void testStateWinsOverSuperState() throws Exception {
+        engine.event(0);
+        assertEquals(ValveFSM.Open.Dripping.class, currentState());
+        engine.stop();
+    }
+
+    @Test
+    public void testSuperStateAppliesToStatesWithoutKey() throws Exception {
+        engine.event(100);
+        engine.event(0);
+        assertEquals(ValveFSM.Closed.class, currentState());
+        engine.stop();
+    }
+
+    @Test
+    public void testDuplicateKeyIsAmbiguous() throws Exception {
+        engine.event(100);
+        engine.event(0);
+        assertEquals(ValveFSM.Closed.class, currentState());
+
+        // the engine stops rather than pick one
+        engine.event(99);
+        assertEquals(ValveFSM.Closed.class, currentState());
+        try {
+            engine.event(50);
+            fail("still running");
+        } catch (IllegalStateException expected) {
+            // stopped
+        }
+    }
+
+    @Test
+    public void testKeyedConstantsWinOverTransitionsTakingAny() throws Exception {
+        DefaultEngine<ModeFSM, ModeFSM.Mode> engine = (DefaultEngine<ModeFSM, ModeFSM.Mode>) EngineFactory.newInstance()
+                .<ModeFSM, ModeFSM.Mode>newEngine(new ModeFSM(), configurationBuilder()
+                        .discovery(Discovery.Declared)
+                        .virtualTime(new VirtualTimeScheduler()));
+        engine.start();
+
+        // keyed in the state itself, and in its superstate
+        engine.event(ModeFSM.Mode.MANUAL);
+        assertEquals(ModeFSM.Powered.Manual.class, engine.getSnapshot().getCurrentState().get());
+        engine.event(ModeFSM.Mode.AUTO);
+        engine.event(ModeFSM.Mode.OFF);
+        assertEquals(ModeFSM.Off.class, engine.getSnapshot().getCurrentState().get());
+
+        // keyed on nothing but MANUAL and OFF, the rest is taken by the transition taking any
+        engine.event(ModeFSM.Mode.AUTO);
+        engine.event(ModeFSM.Mode.AUTO);
+        assertEquals(ModeFSM.Powered.Auto.class, engine.getSnapshot().getCurrentState().get());
+        engine.stop();
+    }
+
+    private Object currentState() {
+        return engine.getSnapshot().getCurrentState().get();
+    }
+}
@@ -0,0 +1,59 @@
+package jibe.tools.fsm.api.test.keyed;
+
+import jibe.tools.fsm.annotations.StartState;
+import jibe.tools.fsm.annotations.State;
+import jibe.tools.fsm.annotations.StateMachine;
+import jibe.tools.fsm.annotations.SuperState;
+import jibe.tools.fsm.annotations.Transition;
+
+/**
+ * A controller switched by enum constants, mixing transitions keyed on a constant with ones taking any constant.
+ */
+@StateMachine
+class ModeFSM {
+    enum Mode {
+        AUTO,
+        MANUAL,
+        OFF
+    }
+
+    @SuperState
+    class Powered {
+        @Transition(on = "OFF")
+        public Off off(Mode mode) {
+            return new Off();
+        }
+
+        @StartState
+        class Auto {
+            @Transition(on = "MANUAL")
+            public Manual manual(Mode mode) {
+                return new Manual();
+            }
+
+            /**
+             * Any other mode leaves it automatic, but for those keyed here or in {@link Powered}.
+             */
+            @Transition
+            public Auto any(Mode mode) {
+                return new Auto();
+            }
+        }
+
+        @State
+        class Manual {
+            @Transition(on = "AUTO")
+            public Auto auto(Mode mode) {
+                return new Auto();
+            }
+        }
+    }
+
+    @State
+    class Off {
+        @Transition(on = "AUTO")
+        public Powered.Auto on(Mode mode) {
+            return new Powered().new Auto();
+        }
+    }
+}
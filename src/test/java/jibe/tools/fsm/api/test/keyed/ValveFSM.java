@@ -0,0 +1,67 @@
+package jibe.tools.fsm.api.test.keyed;
+
+import jibe.tools.fsm.annotations.StartState;
+import jibe.tools.fsm.annotations.State;
+import jibe.tools.fsm.annotations.StateMachine;
+import jibe.tools.fsm.annotations.SuperState;
+import jibe.tools.fsm.annotations.Transition;
+
+/**
+ * A valve set by percentage, its transitions keyed on values parsed with {@link Integer#valueOf(String)}.
+ */
+@StateMachine
+class ValveFSM {
+    @SuperState
+    class Open {
+        @Transition(on = "0")
+        public Closed close(Integer percent) {
+            return new Closed();
+        }
+
+        @Transition(on = "+100")
+        public Full open(Integer percent) {
+            return new Full();
+        }
+
+        @StartState
+        class Half {
+            /**
+             * Overrides the close of {@link Open}: a half open valve drips shut.
+             */
+            @Transition(on = "0")
+            public Dripping close(Integer percent) {
+                return new Dripping();
+            }
+        }
+
+        @State
+        class Full {
+            @Transition(on = "050")
+            public Half half(Integer percent) {
+                return new Half();
+            }
+        }
+
+        @State
+        class Dripping {
+        }
+    }
+
+    @State
+    class Closed {
+        @Transition(on = "50")
+        public Open.Half half(Integer percent) {
+            return new Open().new Half();
+        }
+
+        @Transition(on = "99")
+        public Open.Half almostFull(Integer percent) {
+            return new Open().new Half();
+        }
+
+        @Transition(on = "99")
+        public Open.Full full(Integer percent) {
+            return new Open().new Full();
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package jibe.tools.fsm.api.test.raise;
+
+import jibe.tools.fsm.annotations.Action;
+import jibe.tools.fsm.annotations.StartState;
+import jibe.tools.fsm.annotations.State;
+import jibe.tools.fsm.annotations.StateMachine;
+import jibe.tools.fsm.annotations.Transition;
+import jibe.tools.fsm.api.ActionType;
+import jibe.tools.fsm.api.Context;
+
+import java.util.List;
+
+import static com.google.common.collect.Lists.newArrayList;
+
+/**
+ * An order validates and ships itself by raising internal events.
+ */
+@StateMachine
+class OrderFSM {
+    private Context context;
+    final List<String> trace = newArrayList();
+
+    @StartState
+    class Idle {
+        @Transition(on = "order")
+        public Validating order(String event) {
+            return new Validating();
+        }
+    }
+
+    @State
+    class Validating {
+        @Action(ActionType.OnEnter)
+        public void onEnter() {
+            trace.add("validating");
+            context.raise("valid");
+        }
+
+        @Transition(on = "valid")
+        public Shipping valid(String event) {
+            return new Shipping();
+        }
+    }
+
+    @State
+    class Shipping {
+        @Action(ActionType.OnEnter)
+        public void onEnter() {
+            trace.add("shipping");
+            context.raise("shipped");
+        }
+
+        @Transition(on = "shipped")
+        public Done shipped(String event) {
+            return new Done();
+        }
+    }
+
+    @State
+    class Done {
+        @Transition(on = "reset")
+        public Idle reset(String event) {
+            trace.add("reset");
+            return new Idle();
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package jibe.tools.fsm.api.test.raise;
+
+import com.jayway.awaitility.Awaitility;
+import com.jayway.awaitility.Duration;
+import jibe.tools.fsm.api.Discovery;
+import jibe.tools.fsm.api.Engine;
+import jibe.tools.fsm.core.EngineFactory;
+import org.junit.Test;
+
+import static com.google.common.collect.Lists.newArrayList;
+import static jibe.tools.fsm.core.DefaultEngine.configurationBuilder;
+import static org.junit.Assert.assertEquals;
+
+public class RaiseTest {
+    @Test
+    public void testRaisedEventsRunBeforeQueuedOnes() throws Exception {
+        OrderFSM fsm = new OrderFSM();
+        Engine<OrderFSM, String> engine = EngineFactory.newInstance().newEngine(fsm, configurationBuilder()
+                .discovery(Discovery.Declared));
+        engine.start();
+
+        // "reset" is queued before the order raises "valid" and "shipped", yet finds it done
+        engine.event("order");
+        engine.event("reset");
+        Awaitility.await()
+                .atMost(Duration.ONE_SECOND)
+                .until(() -> fsm.trace.size() == 3);
+        assertEquals(newArrayList("validating", "shipping", "reset"), fsm.trace);
+        assertEquals(OrderFSM.Idle.class, engine.getSnapshot().getCurrentState().get());
+        engine.stop();
+    }
+}
@@ -0,0 +1,79 @@
+package jibe.tools.fsm.api.test.regions;
+
+import jibe.tools.fsm.annotations.Action;
+import jibe.tools.fsm.annotations.Region;
+import jibe.tools.fsm.annotations.StartState;
+import jibe.tools.fsm.annotations.State;
+import jibe.tools.fsm.annotations.StateMachine;
+import jibe.tools.fsm.annotations.Transition;
+import jibe.tools.fsm.annotations.TransitionOnTimeout;
+import jibe.tools.fsm.api.ActionType;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+@StateMachine
+class DeviceFSM {
+    enum Signal {
+        CONNECT,
+        DISCONNECT,
+        UPDATE,
+        RESET
+    }
+
+    final AtomicInteger resets = new AtomicInteger();
+
+    @Region
+    class Connectivity {
+        @StartState
+        class Offline {
+            @Transition(on = "CONNECT")
+            public Online connect(Signal signal) {
+                return new Online();
+            }
+        }
+
+        @State
+        class Online {
+            @Transition(on = { "DISCONNECT", "RESET" })
+            public Offline disconnect(Signal signal) {
+                return new Offline();
+            }
+
+            @Action(ActionType.OnExit)
+            public void onExit() {
+                resets.incrementAndGet();
+            }
+        }
+    }
+
+    @Region
+    class Firmware {
+        @StartState
+        class Idle {
+            @Transition(on = "UPDATE")
+            public Updating update(Signal signal) {
+                return new Updating();
+            }
+        }
+
+        @State
+        class Updating {
+            @Transition(on = "RESET")
+            public Idle reset(Signal signal) {
+                return new Idle();
+            }
+
+            @TransitionOnTimeout(period = 30, timeUnit = SECONDS)
+            public Idle done() {
+                return new Idle();
+            }
+
+            @Action(ActionType.OnExit)
+            public void onExit() {
+                resets.incrementAndGet();
+            }
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package jibe.tools.fsm.api.test.regions;
+
+import com.jayway.awaitility.Awaitility;
+import com.jayway.awaitility.Duration;
+import jibe.tools.fsm.api.Discovery;
+import jibe.tools.fsm.api.Engine;
+import jibe.tools.fsm.core.EngineFactory;
+import jibe.tools.fsm.core.VirtualTimeScheduler;
+import org.junit.Test;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static jibe.tools.fsm.api.test.regions.DeviceFSM.Signal.CONNECT;
+import static jibe.tools.fsm.api.test.regions.DeviceFSM.Signal.RESET;
+import static jibe.tools.fsm.api.test.regions.DeviceFSM.Signal.UPDATE;
+import static jibe.tools.fsm.core.DefaultEngine.configurationBuilder;
+import static org.junit.Assert.assertEquals;
+
+public class RegionTest {
+    @Test
+    public void testRegions() throws Exception {
+        VirtualTimeScheduler scheduler = new VirtualTimeScheduler();
+        DeviceFSM fsm = new DeviceFSM();
+        Engine<DeviceFSM, DeviceFSM.Signal> engine = EngineFactory.newInstance().newEngine(fsm, configurationBuilder()
+                .discovery(Discovery.Declared)
+                .virtualTime(scheduler));
+        engine.start();
+        assertStates(engine, DeviceFSM.Connectivity.Offline.class, DeviceFSM.Firmware.Idle.class);
+
+        engine.event(CONNECT);
+        assertStates(engine, DeviceFSM.Connectivity.Online.class, DeviceFSM.Firmware.Idle.class);
+        engine.event(UPDATE);
+        assertStates(engine, DeviceFSM.Connectivity.Online.class, DeviceFSM.Firmware.Updating.class);
+
+        // one event, both regions
+        engine.event(RESET);
+        assertStates(engine, DeviceFSM.Connectivity.Offline.class, DeviceFSM.Firmware.Idle.class);
+        assertEquals(2, fsm.resets.get());
+
+        // timeouts of a region come back through the engine
+        engine.event(UPDATE);
+        scheduler.advanceBy(30, TimeUnit.SECONDS);
+        assertStates(engine, DeviceFSM.Connectivity.Offline.class, DeviceFSM.Firmware.Idle.class);
+        assertEquals(3, fsm.resets.get());
+        engine.stop();
+    }
+
+    @Test
+    public void testRegionsScanned() throws Exception {
+        Engine<DeviceFSM, DeviceFSM.Signal> engine = EngineFactory.newInstance().newEngine(new DeviceFSM());
+        engine.start();
+        engine.event(CONNECT);
+        engine.event(UPDATE);
+        Awaitility.await()
+            .atMost(Duration.ONE_SECOND)
+            .pollInterval(Duration.ONE_HUNDRED_MILLISECONDS)
+            .until(() -> ((Map<?, ?>) engine.getSnapshot().getCurrentState().get()).get(DeviceFSM.Firmware.class)
+                    .equals(DeviceFSM.Firmware.Updating.class));
+        assertStates(engine, DeviceFSM.Connectivity.Online.class, DeviceFSM.Firmware.Updating.class);
+        engine.stop();
+    }
+
+    private void assertStates(Engine<?, ?> engine, Class<?> connectivity, Class<?> firmware) {
+        Map<?, ?> states = (Map<?, ?>) engine.getSnapshot().getCurrentState().get();
+        assertEquals(connectivity, states.get(DeviceFSM.Connectivity.class));
+        assertEquals(firmware, states.get(DeviceFSM.Firmware.class));
+    }
+}
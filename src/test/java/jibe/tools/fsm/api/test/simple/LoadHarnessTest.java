@@ -0,0 +1,47 @@
+package jibe.tools.fsm.api.test.simple;
+
+import jibe.tools.fsm.api.EventFilter;
+import jibe.tools.fsm.harness.LoadHarness;
+import jibe.tools.fsm.harness.LoadReport;
+import org.junit.Test;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static jibe.tools.fsm.core.DefaultEngine.configurationBuilder;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class LoadHarnessTest {
+    @Test
+    public void testShortRun() throws Exception {
+        LoadReport report = new LoadHarness(SimpleFSM::new)
+                .event("go", 3)
+                .event("back", 1)
+                .engines(2)
+                .rate(2000)
+                .duration(500, MILLISECONDS)
+                .sampleEvery(100, MILLISECONDS)
+                .run();
+
+        assertTrue(report.getSent() > 0);
+        assertEquals(report.getSent() - report.getRejected(), report.getDispatched());
+        assertTrue(report.getLatency(50) <= report.getLatency(99));
+        assertTrue(report.getLatency(99) <= report.getLatency(99.9));
+        assertTrue(report.getLatency(99.9) <= report.getMaxLatency());
+        assertTrue(report.getQueueDepths().size() >= 4);
+        assertTrue(report.toJson().contains("\"p99.9\":"));
+    }
+
+    @Test
+    public void testFilteredEventsAreRejected() throws Exception {
+        LoadReport report = new LoadHarness(SimpleFSM::new)
+                .configuration(() -> configurationBuilder().eventFilter(EventFilter.Eager))
+                .event("go", 1)
+                .event(42, 1)
+                .rate(1000)
+                .duration(300, MILLISECONDS)
+                .run();
+
+        assertTrue(report.getRejected() > 0);
+        assertEquals(report.getSent() - report.getRejected(), report.getDispatched());
+    }
+}
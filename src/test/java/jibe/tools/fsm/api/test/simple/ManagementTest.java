@@ -0,0 +1,65 @@
+package jibe.tools.fsm.api.test.simple;
+
+import com.jayway.awaitility.Awaitility;
+import com.jayway.awaitility.Duration;
+import jibe.tools.fsm.api.Engine;
+import jibe.tools.fsm.core.EngineFactory;
+import jibe.tools.fsm.core.EngineMXBean;
+import org.junit.Test;
+
+import javax.management.JMX;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Set;
+
+import static jibe.tools.fsm.core.DefaultEngine.configurationBuilder;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ManagementTest {
+    @Test
+    public void testPauseAndResizeOverJmx() throws Exception {
+        Engine<SimpleFSM, Object> engine = EngineFactory.newInstance().newEngine(new SimpleFSM(), configurationBuilder()
+                .queueSize(8)
+                .maxQueueSize(64)
+                .mbean("management-test"));
+        engine.start();
+
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        Set<ObjectName> names = server.queryNames(new ObjectName("jibe.tools.fsm:type=Engine,group=\"management-test\",*"), null);
+        assertEquals(1, names.size());
+        EngineMXBean mbean = JMX.newMXBeanProxy(server, names.iterator().next(), EngineMXBean.class);
+        assertEquals(SimpleFSM.State1.class.getName(), mbean.getCurrentState());
+
+        mbean.pause();
+        mbean.setQueueLimit(2);
+        // the first is taken off the queue and held until resumed
+        engine.event("go");
+        Awaitility.await().atMost(Duration.ONE_SECOND).until(() -> mbean.getQueueDepth() == 0);
+        engine.event("go");
+        engine.event("go");
+        Awaitility.await().atMost(Duration.ONE_SECOND).until(() -> mbean.getQueueDepth() == 2);
+        try {
+            engine.event("go");
+            fail("queue limit not applied");
+        } catch (IllegalStateException expected) {
+            assertTrue(expected.getMessage().contains("Queue full"));
+        }
+        assertEquals(SimpleFSM.State1.class.getName(), mbean.getCurrentState());
+
+        mbean.setQueueLimit(64);
+        engine.event("go");
+        mbean.resume();
+        Awaitility.await().atMost(Duration.ONE_SECOND).until(() -> mbean.getEventsDispatched() == 4);
+        assertEquals(SimpleFSM.State1.class.getName(), mbean.getCurrentState());
+        assertEquals(4, mbean.getTransitions());
+
+        mbean.setExecutorPoolSize(4);
+        assertEquals(4, mbean.getExecutorPoolSize());
+
+        engine.stop();
+        assertTrue(server.queryNames(new ObjectName("jibe.tools.fsm:type=Engine,group=\"management-test\",*"), null).isEmpty());
+    }
+}
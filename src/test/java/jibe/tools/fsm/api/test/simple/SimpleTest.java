@@ -2,14 +2,87 @@ package jibe.tools.fsm.api.test.simple;
 
 import com.jayway.awaitility.Awaitility;
 import com.jayway.awaitility.Duration;
+import jibe.tools.fsm.api.Discovery;
 import jibe.tools.fsm.api.Engine;
 import jibe.tools.fsm.core.EngineFactory;
+import jibe.tools.fsm.core.VirtualTimeScheduler;
 import org.junit.Test;
 
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+
+import static jibe.tools.fsm.core.DefaultEngine.configurationBuilder;
+
 public class SimpleTest {
     @Test
     public void testSimple() throws Exception {
         Engine<SimpleFSM, Object> engine = EngineFactory.newInstance().newEngine(new SimpleFSM());
+        testSimple(engine);
+    }
+
+    @Test
+    public void testSimpleDeclared() throws Exception {
+        testSimple(EngineFactory.newInstance().newEngine(new SimpleFSM(), configurationBuilder()
+                .discovery(Discovery.Declared)));
+    }
+
+    @Test
+    public void testConfigurationImplementingOnlyOriginalSettings() throws Exception {
+        Engine.Configuration configuration = new Engine.Configuration() {
+            @Override
+            public ThreadFactory getThreadFactory() {
+                return null;
+            }
+
+            @Override
+            public ExecutorService getExecutorService() {
+                return null;
+            }
+
+            @Override
+            public ScheduledExecutorService getScheduledExecutorService() {
+                return null;
+            }
+
+            @Override
+            public Integer getQueueSize() {
+                return 16;
+            }
+
+            @Override
+            public Long getActionTimeoutMillis() {
+                return null;
+            }
+
+            @Override
+            public Long getTransitionTimeoutMillis() {
+                return null;
+            }
+
+            @Override
+            public ClassLoader getClassLoader() {
+                return null;
+            }
+        };
+        testSimple(EngineFactory.newInstance().newEngine(new SimpleFSM(), configuration));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testInlineRefusesSchedulerOfItsOwn() throws Exception {
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+        try {
+            EngineFactory.newInstance().newEngine(new SimpleFSM(), configurationBuilder()
+                    .virtualTime(new VirtualTimeScheduler())
+                    .scheduledExecutorService(scheduler))
+                    .start();
+        } finally {
+            scheduler.shutdown();
+        }
+    }
+
+    private void testSimple(Engine<SimpleFSM, Object> engine) throws Exception {
         engine.start();
 
         Awaitility.await()
@@ -31,5 +104,6 @@ public class SimpleTest {
             .pollInterval(Duration.ONE_HUNDRED_MILLISECONDS)
             .until(() -> engine.getSnapshot().getCurrentState().isPresent() &&
                              engine.getSnapshot().getCurrentState().get().equals(SimpleFSM.State1.class));
+        engine.stop();
     }
 }
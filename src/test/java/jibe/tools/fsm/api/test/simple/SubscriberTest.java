@@ -0,0 +1,37 @@
+package jibe.tools.fsm.api.test.simple;
+
+import com.jayway.awaitility.Awaitility;
+import com.jayway.awaitility.Duration;
+import jibe.tools.fsm.core.DefaultEngine;
+import jibe.tools.fsm.core.EngineFactory;
+import org.junit.Test;
+
+import java.util.concurrent.SubmissionPublisher;
+
+import static jibe.tools.fsm.core.DefaultEngine.configurationBuilder;
+import static org.junit.Assert.assertEquals;
+
+public class SubscriberTest {
+    private static final int EVENTS = 10_000;
+
+    @Test
+    public void testPublisherIsThrottledToQueue() throws Exception {
+        DefaultEngine<SimpleFSM, Object> engine = (DefaultEngine<SimpleFSM, Object>) EngineFactory.newInstance()
+                .<SimpleFSM, Object>newEngine(new SimpleFSM(), configurationBuilder().queueSize(8));
+        engine.start();
+
+        try (SubmissionPublisher<Object> publisher = new SubmissionPublisher<>()) {
+            publisher.subscribe(engine.subscriber());
+            for (int i = 0; i < EVENTS; i++) {
+                publisher.submit("toggle");
+            }
+        }
+
+        // one transition per event, none refused by the queue
+        Awaitility.await()
+                .atMost(Duration.FIVE_SECONDS)
+                .until(() -> engine.getTransitionRecorder().get().written() == EVENTS);
+        assertEquals(SimpleFSM.State1.class, engine.getSnapshot().getCurrentState().get());
+        engine.stop();
+    }
+}
@@ -0,0 +1,138 @@
+package jibe.tools.fsm.api.test.superstates;
+
+import jibe.tools.fsm.annotations.Action;
+import jibe.tools.fsm.annotations.StartState;
+import jibe.tools.fsm.annotations.State;
+import jibe.tools.fsm.annotations.StateMachine;
+import jibe.tools.fsm.annotations.SuperState;
+import jibe.tools.fsm.annotations.Transition;
+import jibe.tools.fsm.api.ActionType;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A player two superstates deep, tracing every entry and exit.
+ */
+@StateMachine
+class PlayerFSM {
+    final List<String> trace = new ArrayList<>();
+    /**
+     * Speed-ups counted by the live {@link Powered.Playing} instance.
+     */
+    int speedUps;
+
+    @SuperState
+    class Powered {
+        @Action(ActionType.OnEnter)
+        public void onEnter() {
+            trace.add("enter Powered");
+        }
+
+        @Action(ActionType.OnExit)
+        public void onExit() {
+            trace.add("exit Powered");
+        }
+
+        @Transition(on = "off")
+        public Off off(String event) {
+            return new Off();
+        }
+
+        @SuperState
+        class Playing {
+            private int speedUps;
+
+            @Action(ActionType.OnEnter)
+            public void onEnter() {
+                trace.add("enter Playing");
+            }
+
+            @Action(ActionType.OnExit)
+            public void onExit() {
+                trace.add("exit Playing");
+            }
+
+            @Transition(on = "pause")
+            public Paused pause(String event) {
+                return new Paused();
+            }
+
+            @StartState
+            class Normal {
+                @Action(ActionType.OnEnter)
+                public void onEnter() {
+                    trace.add("enter Normal");
+                }
+
+                @Action(ActionType.OnExit)
+                public void onExit() {
+                    trace.add("exit Normal");
+                }
+
+                @Transition(on = "fast")
+                public Fast fast(String event) {
+                    PlayerFSM.this.speedUps = ++speedUps;
+                    return new Fast();
+                }
+            }
+
+            @State
+            class Fast {
+                @Action(ActionType.OnEnter)
+                public void onEnter() {
+                    trace.add("enter Fast");
+                }
+
+                @Action(ActionType.OnExit)
+                public void onExit() {
+                    trace.add("exit Fast");
+                }
+
+                /**
+                 * Overrides the pause of {@link Playing}: slows down instead.
+                 */
+                @Transition(on = "pause")
+                public Normal pause(String event) {
+                    return new Normal();
+                }
+            }
+        }
+
+        @State
+        class Paused {
+            @Action(ActionType.OnEnter)
+            public void onEnter() {
+                trace.add("enter Paused");
+            }
+
+            @Action(ActionType.OnExit)
+            public void onExit() {
+                trace.add("exit Paused");
+            }
+
+            @Transition(on = "play")
+            public Playing.Normal play(String event) {
+                return new Playing().new Normal();
+            }
+        }
+    }
+
+    @State
+    class Off {
+        @Action(ActionType.OnEnter)
+        public void onEnter() {
+            trace.add("enter Off");
+        }
+
+        @Action(ActionType.OnExit)
+        public void onExit() {
+            trace.add("exit Off");
+        }
+
+        @Transition(on = "on")
+        public Powered.Playing.Normal on(String event) {
+            return new Powered().new Playing().new Normal();
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package jibe.tools.fsm.api.test.superstates;
+
+import com.google.common.util.concurrent.MoreExecutors;
+import jibe.tools.fsm.api.Discovery;
+import jibe.tools.fsm.api.Engine;
+import jibe.tools.fsm.core.DefaultEngine;
+import jibe.tools.fsm.core.EngineFactory;
+import jibe.tools.fsm.core.VirtualTimeScheduler;
+import org.junit.Before;
+import org.junit.Test;
+
+import static java.util.Arrays.asList;
+import static java.util.concurrent.TimeUnit.MINUTES;
+import static jibe.tools.fsm.core.DefaultEngine.configurationBuilder;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class SuperStateTest {
+    private PlayerFSM fsm;
+    private Engine<PlayerFSM, String> engine;
+
+    @Before
+    public void setUp() {
+        fsm = new PlayerFSM();
+        engine = EngineFactory.newInstance().newEngine(fsm, configurationBuilder()
+                .discovery(Discovery.Declared)
+                .virtualTime(new VirtualTimeScheduler()));
+        engine.start();
+    }
+
+    @Test
+    public void testStartEntersOutermostFirst() throws Exception {
+        assertEquals(asList("enter Powered", "enter Playing", "enter Normal"), fsm.trace);
+        engine.stop();
+    }
+
+    @Test
+    public void testTransitionWithinSuperStateCrossesNoBoundary() throws Exception {
+        fsm.trace.clear();
+        engine.event("fast");
+        assertEquals(asList("exit Normal", "enter Fast"), fsm.trace);
+        engine.stop();
+    }
+
+    @Test
+    public void testInheritedTransitionExitsInnermostFirst() throws Exception {
+        fsm.trace.clear();
+        engine.event("pause");
+        assertEquals(PlayerFSM.Powered.Paused.class, engine.getSnapshot().getCurrentState().get());
+        assertEquals(asList("exit Normal", "exit Playing", "enter Paused"), fsm.trace);
+
+        fsm.trace.clear();
+        engine.event("play");
+        assertEquals(asList("exit Paused", "enter Playing", "enter Normal"), fsm.trace);
+        engine.stop();
+    }
+
+    @Test
+    public void testStateOverridesInheritedTransition() throws Exception {
+        engine.event("fast");
+        fsm.trace.clear();
+        engine.event("pause");
+        assertEquals(PlayerFSM.Powered.Playing.Normal.class, engine.getSnapshot().getCurrentState().get());
+        assertEquals(asList("exit Fast", "enter Normal"), fsm.trace);
+        engine.stop();
+    }
+
+    @Test
+    public void testTransitionOfOutermostSuperState() throws Exception {
+        engine.event("fast");
+        fsm.trace.clear();
+        engine.event("off");
+        assertEquals(PlayerFSM.Off.class, engine.getSnapshot().getCurrentState().get());
+        assertEquals(asList("exit Fast", "exit Playing", "exit Powered", "enter Off"), fsm.trace);
+
+        fsm.trace.clear();
+        engine.event("on");
+        assertEquals(asList("exit Off", "enter Powered", "enter Playing", "enter Normal"), fsm.trace);
+        engine.stop();
+    }
+
+    @Test
+    public void testStatesCreatedAfterHibernationNestInTheKeptSuperState() throws Exception {
+        engine.stop();
+        VirtualTimeScheduler time = new VirtualTimeScheduler();
+        PlayerFSM fsm = new PlayerFSM();
+        DefaultEngine<PlayerFSM, String> engine = (DefaultEngine<PlayerFSM, String>) EngineFactory.newInstance()
+                .<PlayerFSM, String>newEngine(fsm, configurationBuilder()
+                        .discovery(Discovery.Declared)
+                        .executorService(MoreExecutors.newDirectExecutorService())
+                        .scheduledExecutorService(time)
+                        .clock(time)
+                        .hibernateAfter(10, MINUTES));
+        engine.start();
+        engine.event("fast");
+        time.advanceBy(20, MINUTES);
+        assertTrue(engine.isHibernated());
+
+        // Normal is created anew, inside the Playing that counted the first speed-up
+        engine.event("pause");
+        engine.event("fast");
+        assertEquals(2, fsm.speedUps);
+        engine.stop();
+    }
+}
@@ -0,0 +1,50 @@
+package jibe.tools.fsm.api.test.supervision;
+
+import jibe.tools.fsm.annotations.Action;
+import jibe.tools.fsm.annotations.StartState;
+import jibe.tools.fsm.annotations.State;
+import jibe.tools.fsm.annotations.StateMachine;
+import jibe.tools.fsm.annotations.Transition;
+import jibe.tools.fsm.api.ActionType;
+
+/**
+ * A worker whose idle state fails on "boom".
+ */
+@StateMachine
+class FlakyFSM {
+    int entered;
+
+    @StartState
+    class Idle {
+        @Action(ActionType.OnEnter)
+        public void onEnter() {
+            entered++;
+        }
+
+        @Transition(on = "work")
+        public Busy work(String event) {
+            return new Busy();
+        }
+
+        @Transition(on = "boom")
+        public Idle boom(String event) {
+            throw new IllegalStateException(event);
+        }
+    }
+
+    @State
+    class Busy {
+        @Transition(on = "done")
+        public Idle done(String event) {
+            return new Idle();
+        }
+    }
+
+    @State
+    class Broken {
+        @Transition(on = "repair")
+        public Idle repair(String event) {
+            return new Idle();
+        }
+    }
+}
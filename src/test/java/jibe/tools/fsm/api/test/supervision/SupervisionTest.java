@@ -0,0 +1,69 @@
+package jibe.tools.fsm.api.test.supervision;
+
+import jibe.tools.fsm.api.Discovery;
+import jibe.tools.fsm.api.Engine;
+import jibe.tools.fsm.api.Supervision;
+import jibe.tools.fsm.core.EngineFactory;
+import jibe.tools.fsm.core.VirtualTimeScheduler;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static jibe.tools.fsm.core.DefaultEngine.configurationBuilder;
+import static org.junit.Assert.assertEquals;
+
+public class SupervisionTest {
+    @Test
+    public void testResume() throws Exception {
+        FlakyFSM fsm = new FlakyFSM();
+        Engine<FlakyFSM, String> engine = EngineFactory.newInstance().newEngine(fsm, configurationBuilder()
+                .discovery(Discovery.Declared)
+                .supervision(Supervision.Resume)
+                .virtualTime(new VirtualTimeScheduler()));
+        engine.start();
+
+        engine.event("boom");
+        engine.event("work");
+        assertEquals(FlakyFSM.Busy.class, engine.getSnapshot().getCurrentState().get());
+        assertEquals(1, fsm.entered);
+        engine.stop();
+    }
+
+    @Test
+    public void testRestartKeepsStateAndQueue() throws Exception {
+        FlakyFSM fsm = new FlakyFSM();
+        VirtualTimeScheduler scheduler = new VirtualTimeScheduler();
+        Engine<FlakyFSM, String> engine = EngineFactory.newInstance().newEngine(fsm, configurationBuilder()
+                .discovery(Discovery.Declared)
+                .supervision(Supervision.Restart)
+                .restartBackoff(100, TimeUnit.MILLISECONDS)
+                .virtualTime(scheduler));
+        engine.start();
+
+        engine.event("boom");
+        assertEquals(2, fsm.entered);
+
+        // backing off: the event waits in the queue
+        engine.event("work");
+        assertEquals(FlakyFSM.Idle.class, engine.getSnapshot().getCurrentState().get());
+        scheduler.advanceBy(100, TimeUnit.MILLISECONDS);
+        assertEquals(FlakyFSM.Busy.class, engine.getSnapshot().getCurrentState().get());
+        engine.stop();
+    }
+
+    @Test
+    public void testErrorState() throws Exception {
+        FlakyFSM fsm = new FlakyFSM();
+        Engine<FlakyFSM, String> engine = EngineFactory.newInstance().newEngine(fsm, configurationBuilder()
+                .discovery(Discovery.Declared)
+                .errorState(FlakyFSM.Broken.class)
+                .virtualTime(new VirtualTimeScheduler()));
+        engine.start();
+
+        engine.event("boom");
+        assertEquals(FlakyFSM.Broken.class, engine.getSnapshot().getCurrentState().get());
+        engine.event("repair");
+        assertEquals(FlakyFSM.Idle.class, engine.getSnapshot().getCurrentState().get());
+        engine.stop();
+    }
+}
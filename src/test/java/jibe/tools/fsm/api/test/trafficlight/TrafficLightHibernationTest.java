@@ -0,0 +1,104 @@
+package jibe.tools.fsm.api.test.trafficlight;
+
+import com.google.common.util.concurrent.MoreExecutors;
+import com.jayway.awaitility.Awaitility;
+import com.jayway.awaitility.Duration;
+import jibe.tools.fsm.api.Discovery;
+import jibe.tools.fsm.api.Engine;
+import jibe.tools.fsm.core.DefaultEngine;
+import jibe.tools.fsm.core.EngineFactory;
+import jibe.tools.fsm.core.VirtualTimeScheduler;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+import static com.google.common.collect.Lists.newArrayList;
+import static java.util.concurrent.TimeUnit.HOURS;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.MINUTES;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static jibe.tools.fsm.core.DefaultEngine.configurationBuilder;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TrafficLightHibernationTest {
+    @Test
+    public void testHibernateAndWakeUp() throws Exception {
+        VirtualTimeScheduler time = new VirtualTimeScheduler();
+        DefaultEngine<TrafficLightFSM, String> engine = (DefaultEngine<TrafficLightFSM, String>) EngineFactory.newInstance()
+                .<TrafficLightFSM, String>newEngine(new TrafficLightFSM(), configurationBuilder()
+                        .executorService(MoreExecutors.newDirectExecutorService())
+                        .scheduledExecutorService(time)
+                        .clock(time)
+                        .hibernateAfter(10, MINUTES));
+        engine.start();
+        assertEquals("RedLight", currentState(engine));
+
+        // timeouts keep it busy
+        time.advanceBy(1, HOURS);
+        assertFalse(engine.isHibernated());
+
+        engine.event("error");
+        assertEquals("BlinkingYellowLight", currentState(engine));
+        time.advanceBy(20, MINUTES);
+        assertTrue(engine.isHibernated());
+        assertEquals("BlinkingYellowLight", currentState(engine));
+
+        engine.event("fixed");
+        assertFalse(engine.isHibernated());
+        assertEquals("RedLight", currentState(engine));
+
+        // and timers still wake it up
+        engine.event("error");
+        time.advanceBy(20, MINUTES);
+        assertTrue(engine.isHibernated());
+        engine.event("fixed");
+        time.advanceBy(10, SECONDS);
+        assertEquals("RedAndYellowLight", currentState(engine));
+        engine.stop();
+    }
+
+    @Test
+    public void testStoppingOneEngineLeavesSharedPoolsRunning() throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+        ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(1);
+        List<DefaultEngine<TrafficLightFSM, String>> engines = newArrayList();
+        for (int i = 0; i < 3; i++) {
+            DefaultEngine<TrafficLightFSM, String> engine = (DefaultEngine<TrafficLightFSM, String>) EngineFactory.newInstance()
+                    .<TrafficLightFSM, String>newEngine(new TrafficLightFSM(), configurationBuilder()
+                            .discovery(Discovery.Declared)
+                            .executorService(pool)
+                            .scheduledExecutorService(scheduler)
+                            .hibernateAfter(50, MILLISECONDS));
+            engine.start();
+            engine.event("error");
+            engines.add(engine);
+        }
+        for (DefaultEngine<TrafficLightFSM, String> engine : engines) {
+            Awaitility.await().atMost(Duration.FIVE_SECONDS).until(engine::isHibernated);
+        }
+
+        engines.get(0).stop();
+        assertFalse(pool.isShutdown());
+        assertFalse(scheduler.isShutdown());
+
+        // the others still wake up, dispatch and hibernate again on the shared threads
+        for (DefaultEngine<TrafficLightFSM, String> engine : engines.subList(1, 3)) {
+            engine.event("fixed");
+            Awaitility.await().atMost(Duration.FIVE_SECONDS).until(() -> "RedLight".equals(currentState(engine)));
+            Awaitility.await().atMost(Duration.FIVE_SECONDS).until(engine::isHibernated);
+            engine.stop();
+        }
+        assertFalse(pool.isShutdown());
+        pool.shutdown();
+        scheduler.shutdown();
+    }
+
+    private String currentState(Engine<TrafficLightFSM, String> engine) {
+        return ((Class<?>) engine.getSnapshot().getCurrentState().get()).getSimpleName();
+    }
+}
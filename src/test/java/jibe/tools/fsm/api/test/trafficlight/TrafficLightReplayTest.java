@@ -0,0 +1,66 @@
+package jibe.tools.fsm.api.test.trafficlight;
+
+import jibe.tools.fsm.core.ReplayReport;
+import jibe.tools.fsm.core.ReplayRunner;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static jibe.tools.fsm.core.ReplayRunner.event;
+import static org.junit.Assert.assertEquals;
+
+public class TrafficLightReplayTest {
+    @Test
+    public void testReplayHourInVirtualTime() throws Exception {
+        long hour = TimeUnit.HOURS.toMillis(1);
+        ReplayReport report = ReplayRunner.<TrafficLightFSM, String>newInstance(TrafficLightFSM::new)
+                .run(Arrays.asList(
+                        event(0, "a", "tick"),
+                        event(0, "b", "tick"),
+                        event(hour, "a", "error"),
+                        event(hour, "b", "tick")).iterator());
+
+        assertEquals(4, report.getEvents());
+        assertEquals(hour, report.getVirtualMillis());
+        // a full cycle is 16 seconds and four transitions, plus the error for "a"
+        assertEquals((2 * 4 * (hour / 16000)) + 1, report.getTransitions());
+
+        Map<String, Integer> finalStates = new HashMap<>();
+        for (Map.Entry<Class<?>, Integer> e : report.getFinalStates().entrySet()) {
+            finalStates.put(e.getKey().getSimpleName(), e.getValue());
+        }
+        assertEquals(Integer.valueOf(1), finalStates.get("BlinkingYellowLight"));
+        assertEquals(Integer.valueOf(1), finalStates.get("RedLight"));
+    }
+
+    @Test(timeout = 10000)
+    public void testReplayManyKeys() throws Exception {
+        int keys = 1000;
+        long minute = TimeUnit.MINUTES.toMillis(1);
+        List<ReplayRunner.TimestampedEvent<String>> events = new ArrayList<>();
+        for (int key = 0; key < keys; key++) {
+            events.add(event(0, "light-" + key, "tick"));
+        }
+        for (int key = 0; key < keys; key += 2) {
+            events.add(event(minute, "light-" + key, "error"));
+        }
+        ReplayReport report = ReplayRunner.<TrafficLightFSM, String>newInstance(TrafficLightFSM::new).run(events.iterator());
+
+        assertEquals(keys + keys / 2, report.getEvents());
+        int blinking = 0;
+        int total = 0;
+        for (Map.Entry<Class<?>, Integer> e : report.getFinalStates().entrySet()) {
+            total += e.getValue();
+            if (e.getKey().getSimpleName().equals("BlinkingYellowLight")) {
+                blinking = e.getValue();
+            }
+        }
+        assertEquals(keys, total);
+        assertEquals(keys / 2, blinking);
+    }
+}
@@ -0,0 +1,42 @@
+package jibe.tools.fsm.api.test.trafficlight;
+
+import jibe.tools.fsm.api.Engine;
+import jibe.tools.fsm.core.EngineFactory;
+import jibe.tools.fsm.core.VirtualTimeScheduler;
+import org.junit.Test;
+
+import static java.util.concurrent.TimeUnit.HOURS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static jibe.tools.fsm.core.DefaultEngine.configurationBuilder;
+import static org.junit.Assert.assertEquals;
+
+public class TrafficLightVirtualTimeTest {
+    @Test
+    public void testTimeoutsOnVirtualTime() throws Exception {
+        VirtualTimeScheduler time = new VirtualTimeScheduler();
+        Engine<TrafficLightFSM, String> engine = EngineFactory.newInstance()
+                .newEngine(new TrafficLightFSM(), configurationBuilder().virtualTime(time));
+        engine.start();
+        assertEquals("RedLight", currentState(engine));
+
+        time.advanceBy(10, SECONDS);
+        assertEquals("RedAndYellowLight", currentState(engine));
+
+        assertEquals(3, time.runUntilIdle(3));
+        assertEquals("RedLight", currentState(engine));
+        assertEquals(16000, time.currentTimeMillis());
+
+        time.advanceBy(1, HOURS);
+        engine.event("error");
+        assertEquals("BlinkingYellowLight", currentState(engine));
+        assertEquals(0, time.runUntilIdle(10));
+
+        engine.event("fixed");
+        assertEquals("RedLight", currentState(engine));
+        engine.stop();
+    }
+
+    private String currentState(Engine<TrafficLightFSM, String> engine) {
+        return ((Class<?>) engine.getSnapshot().getCurrentState().get()).getSimpleName();
+    }
+}